@@ -0,0 +1,8 @@
+if exist ..\javaHome.cmd (
+    call ..\javaHome.cmd
+)
+
+rem build first with: mvn_install.cmd in the root
+rem a single benchmark: run.cmd TrackLookupBenchmark
+call %JAVA_HOME%\bin\java -jar target\benchmarks.jar -prof gc %*
+pause
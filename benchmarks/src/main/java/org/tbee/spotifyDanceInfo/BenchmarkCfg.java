@@ -0,0 +1,31 @@
+package org.tbee.spotifyDanceInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A Cfg that only holds the dances, the benchmarks read the tracks themselves.
+ * Sources are read synchronously, so a benchmark measures the complete ingest.
+ */
+public class BenchmarkCfg extends Cfg<BenchmarkCfg> {
+
+    private final Map<String, String> storage = new HashMap<>();
+
+    public BenchmarkCfg() {
+        super("benchmark.tecl", false, false);
+    }
+
+    public BenchmarkCfg(Cfg<?> base) {
+        super(base);
+    }
+
+    @Override
+    protected void remember(String id, String v) {
+        storage.put(id, v);
+    }
+
+    @Override
+    protected String recall(String id) {
+        return storage.getOrDefault(id, "");
+    }
+}
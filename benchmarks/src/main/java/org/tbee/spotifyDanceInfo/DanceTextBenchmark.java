@@ -0,0 +1,43 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting the dance column of a moreTracks row, this is done for every row that is read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DanceTextBenchmark {
+
+    @Param({"cc", "cc,sal", "ru, bol, sf"})
+    public String danceText;
+
+    private Cfg<?> cfg;
+
+    @Setup
+    public void setup() {
+        cfg = new BenchmarkCfg();
+    }
+
+    @Benchmark
+    public List<String> danceTextToDances() {
+        return cfg.danceTextToDances(danceText);
+    }
+}
@@ -0,0 +1,106 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generates the data the benchmarks run on, the track ids and dances come from the shared TrackFixtures.
+ * A fixed seed is used, so every run (and every fork) gets the same data.
+ */
+public class Fixtures {
+
+    static File tsv(String[] trackIds) throws IOException {
+        File file = File.createTempFile("benchmark", ".tsv");
+        file.deleteOnExit();
+        try (
+            BufferedWriter writer = Files.newBufferedWriter(file.toPath());
+        ) {
+            writer.write("trackId\tdanceId\n");
+            for (int i = 0; i < trackIds.length; i++) {
+                writer.append(trackIds[i]).append('\t').append(TrackFixtures.danceText(i)).append('\n');
+            }
+        }
+        return file;
+    }
+
+    static byte[] xls(String[] trackIds) throws IOException {
+        if (trackIds.length > TrackFixtures.XLS_MAX_ROWS) {
+            throw new IllegalArgumentException("A xls can hold at most " + TrackFixtures.XLS_MAX_ROWS + " tracks");
+        }
+        try (
+            Workbook workbook = new HSSFWorkbook();
+        ) {
+            return write(workbook, trackIds);
+        }
+    }
+
+    static byte[] xlsx(String[] trackIds) throws IOException {
+        try (
+            SXSSFWorkbook workbook = new SXSSFWorkbook(1000); // streaming, so large fixtures do not need a large heap
+        ) {
+            try {
+                return write(workbook, trackIds);
+            }
+            finally {
+                workbook.dispose();
+            }
+        }
+    }
+
+    private static byte[] write(Workbook workbook, String[] trackIds) throws IOException {
+        Sheet sheet = workbook.createSheet("tracks");
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("trackId");
+        header.createCell(1).setCellValue("danceId");
+        for (int i = 0; i < trackIds.length; i++) {
+            Row row = sheet.createRow(i + 1);
+            row.createCell(0).setCellValue(trackIds[i]);
+            row.createCell(1).setCellValue(TrackFixtures.danceText(i));
+        }
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        workbook.write(byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Something that looks like cover art: a gradient with some shapes, in the type ImageIO decodes a jpeg into.
+     */
+    static BufferedImage coverArt(int size) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g2 = image.createGraphics();
+        g2.setPaint(new GradientPaint(0, 0, Color.ORANGE, size, size, Color.MAGENTA));
+        g2.fillRect(0, 0, size, size);
+        for (int i = 0; i < 50; i++) {
+            g2.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g2.fillOval(random.nextInt(size), random.nextInt(size), random.nextInt(size / 4) + 1, random.nextInt(size / 4) + 1);
+        }
+        g2.dispose();
+        return image;
+    }
+
+    /**
+     * The image as it is on screen: a copy of the (resized) cover art.
+     */
+    static BufferedImage screen(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.drawImage(coverArt(640), 0, 0, width, height, null);
+        g2.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,74 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The processing of the cover art into a background image, at the common screen sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class ImageBenchmark {
+
+    @Param({"1920x1080", "3840x2160"})
+    public String screenSize;
+
+    @Param({"640"}) // the largest cover art Spotify provides
+    public int coverArtSize;
+
+    @Param({"2.0", "20.0"}) // a small blur uses the gaussian kernel, a large one the box blurs
+    public double blurStddev;
+
+    private Dimension dimension;
+    private BufferedImage coverArt;
+    private BufferedImage screen;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] size = screenSize.split("x");
+        dimension = new Dimension(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        coverArt = Fixtures.coverArt(coverArtSize);
+        screen = Fixtures.screen(dimension.width, dimension.height);
+    }
+
+    @Benchmark
+    public BufferedImage resizeFilling() {
+        return ImageUtil.resizeFilling(coverArt, dimension);
+    }
+
+    @Benchmark
+    public BufferedImage resizeFitting() {
+        return ImageUtil.resizeFitting(coverArt, dimension);
+    }
+
+    /**
+     * The noise is added in place, every invocation adds more noise to the same image; that does not influence the timing.
+     */
+    @Benchmark
+    public BufferedImage addNoise() {
+        return ImageUtil.addNoise(80, screen);
+    }
+
+    @Benchmark
+    public BufferedImage gaussianBlur() {
+        return ImageUtil.addGaussianBlur(screen, blurStddev);
+    }
+}
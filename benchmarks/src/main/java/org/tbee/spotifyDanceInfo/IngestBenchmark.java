@@ -0,0 +1,102 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading moreTracks files, one invocation reads the complete file.
+ * Divide the rows by the score for the number of rows per second.
+ * The OpenCSV reader (InputStream) is kept as a reference for the byte scanner (File).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IngestBenchmark {
+
+    @Param({"10000", "60000"}) // a xls holds at most 65535 rows
+    public int rows;
+
+    private Cfg<?> cfg;
+    private File tsv;
+    private byte[] xls;
+    private byte[] xlsx;
+    private Workbook xlsWorkbook;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String[] trackIds = TrackFixtures.trackIds(rows, 42);
+        cfg = new BenchmarkCfg();
+        tsv = Fixtures.tsv(trackIds);
+        xls = Fixtures.xls(trackIds);
+        xlsx = Fixtures.xlsx(trackIds);
+        xlsWorkbook = new HSSFWorkbook(new ByteArrayInputStream(xls));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        xlsWorkbook.close();
+        tsv.delete();
+    }
+
+    @Benchmark
+    public void tsvScanner() throws IOException {
+        cfg.readMoreTracksTSV("benchmark", tsv, 0, 1);
+    }
+
+    @Benchmark
+    public void tsvOpenCSV() throws IOException {
+        try (
+            InputStream inputStream = new FileInputStream(tsv);
+        ) {
+            cfg.readMoreTracksTSV("benchmark", inputStream, 0, 1);
+        }
+    }
+
+    /**
+     * Only the walking of the sheet, the workbook is already parsed.
+     */
+    @Benchmark
+    public void excelSheet() {
+        cfg.readMoreTracksExcel("benchmark", xlsWorkbook, 0, 0, 1);
+    }
+
+    /**
+     * Parsing a xls and walking the sheet, like a configured xls source.
+     */
+    @Benchmark
+    public void xls() throws IOException {
+        try (
+            Workbook workbook = new HSSFWorkbook(new ByteArrayInputStream(xls));
+        ) {
+            cfg.readMoreTracksExcel("benchmark", workbook, 0, 0, 1);
+        }
+    }
+
+    @Benchmark
+    public void xlsxStreaming() throws IOException {
+        cfg.readMoreTracksXSLX("benchmark", new ByteArrayInputStream(xlsx), 0, 0, 1);
+    }
+}
@@ -0,0 +1,93 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookups that are done for every track that is shown: the dances of a track, and the text of a dance.
+ * The ids are visited in a shuffled order, so the lookups are not helped by the CPU caches more than in real life.
+ * The overlay cases look up through a session with a small upload of its own, like the web application does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TrackLookupBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int tracks;
+
+    private Cfg<?> cfg;
+    private Cfg<?> overlay;
+    private String[] knownIds;
+    private String[] unknownIds;
+    private int idx = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String[] trackIds = TrackFixtures.trackIds(tracks, 42);
+        File file = Fixtures.tsv(trackIds);
+        cfg = new BenchmarkCfg();
+        cfg.readMoreTracksTSV("benchmark", file, 0, 1);
+        file.delete();
+
+        File uploadFile = Fixtures.tsv(TrackFixtures.trackIds(1000, 13));
+        overlay = new BenchmarkCfg(cfg);
+        overlay.readMoreTracksTSV("upload", uploadFile, 0, 1);
+        uploadFile.delete();
+
+        knownIds = TrackFixtures.trackIds(Math.min(tracks, 4096), 42); // the same seed, so the first ids are present
+        Collections.shuffle(Arrays.asList(knownIds), new Random(1));
+        unknownIds = TrackFixtures.trackIds(4096, 7);
+    }
+
+    @Benchmark
+    public List<String> trackIdToDanceIdsHit() {
+        return cfg.trackIdToDanceIds(next(knownIds));
+    }
+
+    @Benchmark
+    public List<String> trackIdToDanceIdsMiss() {
+        return cfg.trackIdToDanceIds(next(unknownIds));
+    }
+
+    @Benchmark
+    public List<String> trackIdToDanceIdsOverlayHit() {
+        return overlay.trackIdToDanceIds(next(knownIds)); // found in the base, after the overlay's own layers
+    }
+
+    @Benchmark
+    public List<String> trackIdToDanceIdsOverlayMiss() {
+        return overlay.trackIdToDanceIds(next(unknownIds));
+    }
+
+    @Benchmark
+    public String danceIdToScreenText() {
+        return cfg.danceIdToScreenText(next(TrackFixtures.DANCE_IDS));
+    }
+
+    private String next(String[] ids) {
+        idx = (idx + 1) % ids.length;
+        return ids[idx];
+    }
+}
@@ -11,16 +11,23 @@ import java.util.prefs.Preferences;
 public class CfgDesktop extends org.tbee.spotifyDanceInfo.Cfg<CfgDesktop> {
     protected static final String SCREEN = "/screen";
     protected static final String BACKGROUNDIMAGE = SCREEN + "/backgroundImage";
+    protected static final String CACHE = "/cache";
 
 
     public CfgDesktop() {
         super();
-        readMoreTracks();
+        useSnapshot().readMoreTracks();
+        if (watchForChanges()) {
+            startWatchingForChanges();
+        }
     }
 
     public CfgDesktop(boolean generateConfigFileIfNotFound) {
         super(generateConfigFileIfNotFound);
-        readMoreTracks();
+        useSnapshot().readMoreTracks();
+        if (watchForChanges()) {
+            startWatchingForChanges();
+        }
     }
 
     @Override
@@ -72,6 +79,20 @@ public class CfgDesktop extends org.tbee.spotifyDanceInfo.Cfg<CfgDesktop> {
     public int backgroundImageNoise() {
         return tecl.integer(BACKGROUNDIMAGE + "/noise", 0);
     }
+    public int backgroundImageBlur() {
+        return tecl.integer(BACKGROUNDIMAGE + "/blur", 0);
+    }
+    public int backgroundImagePrefetch() {
+        return tecl.integer(BACKGROUNDIMAGE + "/prefetch", 2);
+    }
+
+    public int imageCacheSizeMB() {
+        return tecl.integer(CACHE + "/images/sizeMB", 256);
+    }
+
+    public boolean watchForChanges() {
+        return tecl.bool("watchForChanges", false);
+    }
 
     public int nextUpCount() {
         return tecl.integer(SCREEN + "/nextUp/count", 3);
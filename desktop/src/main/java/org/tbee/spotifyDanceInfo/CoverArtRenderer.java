@@ -0,0 +1,137 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Renders the background image from the cover art: downloading, decoding, resizing and adding noise.
+ * That takes a while, so the cover art of the next tracks in the queue is rendered ahead; when the track changes, the image is ready.
+ */
+public class CoverArtRenderer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CoverArtRenderer.class);
+
+    private static final double FILLING_NOISE = 40.0;
+
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService prefetchExecutorService = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("coverArtPrefetch").daemon().factory()); // one at a time, so prefetching does not compete with the screen
+    private final ImageCache imageCache;
+    private final int maxSize;
+    private final Map<Key, Rendering> rendered; // guarded by this
+
+    /**
+     * @param url a string, because URL's equals resolves the host
+     */
+    private record Key(String url, Dimension size, double noise, double blur) {}
+
+    /**
+     * @param claimed set by the task that renders the image, so a prefetch that has not started yet can be taken over by render
+     */
+    private record Rendering(CompletableFuture<BufferedImage> future, AtomicBoolean claimed) {}
+
+    /**
+     * @param imageCache provides the decoded cover art
+     * @param prefetchCount the number of upcoming tracks that are rendered ahead
+     */
+    public CoverArtRenderer(ImageCache imageCache, int prefetchCount) {
+        this.imageCache = imageCache;
+        this.maxSize = prefetchCount + 2; // the current and previous image are kept as well
+        this.rendered = new LinkedHashMap<>(16, 0.75f, true) { // access order
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Rendering> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * An image that is still waiting behind other prefetches is rendered right away instead.
+     * @return the image, that may be rendered already
+     */
+    public CompletableFuture<BufferedImage> render(URL url, Dimension size, double noise, double blur) {
+        return render(url, size, noise, blur, executorService); // do not wait for the prefetching
+    }
+
+    /**
+     * Render the images for the upcoming tracks in the background.
+     */
+    public void prefetch(List<URL> urls, Dimension size, double noise, double blur) {
+        urls.stream()
+                .limit(maxSize - 2)
+                .forEach(url -> render(url, size, noise, blur, prefetchExecutorService));
+    }
+
+    /**
+     * Stop the rendering threads, images that are still being rendered are not completed.
+     */
+    @Override
+    public void close() {
+        prefetchExecutorService.shutdownNow();
+        executorService.shutdownNow();
+    }
+
+    private synchronized CompletableFuture<BufferedImage> render(URL url, Dimension size, double noise, double blur, ExecutorService executorService) {
+        Key key = new Key(url.toString(), new Dimension(size), noise, blur);
+        Rendering rendering = rendered.get(key);
+        if (rendering == null || rendering.future().isCompletedExceptionally()) {
+            rendering = new Rendering(new CompletableFuture<>(), new AtomicBoolean(false));
+            rendered.put(key, rendering);
+            submit(rendering, url, key, executorService);
+        }
+        else if (executorService == this.executorService && !rendering.claimed().get()) {
+            submit(rendering, url, key, executorService); // the queued prefetch finds it claimed, and skips it
+        }
+        return rendering.future();
+    }
+
+    private void submit(Rendering rendering, URL url, Key key, ExecutorService executorService) {
+        executorService.execute(() -> {
+            if (!rendering.claimed().compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                rendering.future().complete(renderImage(url, key.size(), key.noise(), key.blur()));
+            }
+            catch (RuntimeException e) {
+                rendering.future().completeExceptionally(e);
+            }
+        });
+    }
+
+    private BufferedImage renderImage(URL url, Dimension frameSize, double noise, double blur) {
+        long start = System.currentTimeMillis();
+        BufferedImage image = imageCache.decoded(url, frameSize);
+
+        BufferedImage resizedFillingImage = ImageUtil.resizeFilling(image, frameSize);
+        BufferedImage resizedFittingImage = ImageUtil.resizeFitting(image, frameSize);
+
+        // Blurring the filling background, and not the cover on top of it, makes the text stand out while the cover stays sharp
+        if (blur > 0) {
+            resizedFillingImage = ImageUtil.addGaussianBlur(resizedFillingImage, blur);
+        }
+        ImageUtil.addNoise(FILLING_NOISE, resizedFillingImage);
+
+        Graphics2D g2 = resizedFillingImage.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        int centeredX = (resizedFillingImage.getWidth() - resizedFittingImage.getWidth()) / 2;
+        int centeredY = (resizedFillingImage.getHeight() - resizedFittingImage.getHeight()) / 2;
+        g2.drawImage(resizedFittingImage, centeredX, centeredY, null);
+        g2.dispose();
+
+        ImageUtil.addNoise(noise, resizedFillingImage);
+        if (logger.isDebugEnabled()) logger.debug("Rendered " + url + " in " + (System.currentTimeMillis() - start) + " ms");
+        return resizedFillingImage;
+    }
+}
@@ -0,0 +1,194 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps decoded images, and the variants scaled from them, so the same image is not read, decoded and scaled over and over.
+ * The images are large, so the cache has a memory budget; the least recently used images are evicted when it is exceeded.
+ */
+public class ImageCache {
+    private static final Logger logger = LoggerFactory.getLogger(ImageCache.class);
+
+    private static final String DECODED = "decoded";
+
+    private final long maxBytes;
+    private final URL fallbackUrl;
+    private final CoverArtCache coverArtCache;
+    private final LinkedHashMap<Key, BufferedImage> keyToImage = new LinkedHashMap<>(16, 0.75f, true); // access order, guarded by this
+    private long bytes = 0; // guarded by this
+
+    /**
+     * @param url a string, because URL's equals resolves the host
+     * @param size null for the image decoded at full resolution
+     * @param settings identifies what was done to the image, next to scaling it
+     */
+    private record Key(String url, Dimension size, String settings) {}
+
+    /**
+     * @param fallbackUrl the image that is used if an url is empty or cannot be decoded
+     * @param coverArtCache http images are read through this cache
+     */
+    public ImageCache(long maxBytes, URL fallbackUrl, CoverArtCache coverArtCache) {
+        this.maxBytes = maxBytes;
+        this.fallbackUrl = fallbackUrl;
+        this.coverArtCache = coverArtCache;
+    }
+
+    /**
+     * @return the decoded image, which must not be modified
+     */
+    public BufferedImage decoded(URL url) {
+        return get(new Key(url.toString(), null, DECODED), () -> read(url, null));
+    }
+
+    /**
+     * A large image is not decoded at full resolution, but close to the size it is shown at, which takes a lot less memory.
+     * @return the decoded image, large enough to fill the size, which must not be modified
+     */
+    public BufferedImage decoded(URL url, Dimension size) {
+        return get(new Key(url.toString(), new Dimension(size), DECODED), () -> read(url, size));
+    }
+
+    /**
+     * @param settings identifies what the pipeline does, next to scaling to the size
+     * @param pipeline creates the variant from the decoded image, it must not modify the decoded image
+     * @return the variant, which must not be modified
+     */
+    public BufferedImage scaled(URL url, Dimension size, String settings, Function<BufferedImage, BufferedImage> pipeline) {
+        return get(new Key(url.toString(), new Dimension(size), settings), () -> pipeline.apply(decoded(url, size)));
+    }
+
+    private BufferedImage get(Key key, Supplier<BufferedImage> supplier) {
+        synchronized (this) {
+            BufferedImage image = keyToImage.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+
+        // Create outside the lock, a concurrent request for the same key just does the work twice
+        BufferedImage image = supplier.get();
+        if (image == null) {
+            return null; // not cached, so it is tried again
+        }
+        synchronized (this) {
+            BufferedImage previous = keyToImage.put(key, image);
+            if (previous != null) {
+                bytes -= bytes(previous);
+            }
+            bytes += bytes(image);
+
+            // Evict, but always keep the image that was just added
+            Iterator<Map.Entry<Key, BufferedImage>> iterator = keyToImage.entrySet().iterator();
+            while (bytes > maxBytes && keyToImage.size() > 1) {
+                Map.Entry<Key, BufferedImage> eldest = iterator.next();
+                bytes -= bytes(eldest.getValue());
+                iterator.remove();
+                if (logger.isDebugEnabled()) logger.debug("Evicted " + eldest.getKey());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @param size null to decode at full resolution
+     * @return null if neither the image nor the fallback image can be decoded
+     */
+    private BufferedImage read(URL url, Dimension size) {
+        try {
+            // Get image contents (check to see if there is any)
+            byte[] bytes = readBytes(url);
+            if (bytes.length == 0) {
+                bytes = ImageUtil.read(fallbackUrl);
+            }
+
+            // Create image
+            BufferedImage image = read(url, bytes, size);
+            if (image == null && fallbackUrl != null) {
+                logger.warn("Cannot decode " + url + ", using " + fallbackUrl);
+                image = read(fallbackUrl, ImageUtil.read(fallbackUrl), size);
+            }
+            return image;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The header gives the image's size, so whole rows and columns can be skipped while decoding.
+     * Skipping pixels is crude, so at least twice the size is decoded, and then it is scaled down further smoothly.
+     * @param size null to decode at full resolution
+     * @return null if the bytes cannot be decoded
+     */
+    private BufferedImage read(URL url, byte[] bytes, Dimension size) throws IOException {
+        if (size == null || size.width <= 0 || size.height <= 0) {
+            return ImageIO.read(new ByteArrayInputStream(bytes));
+        }
+        try (
+            ImageInputStream imageInputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes));
+        ) {
+            Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+            if (!imageReaders.hasNext()) {
+                return null; // like ImageIO.read
+            }
+            ImageReader imageReader = imageReaders.next();
+            try {
+                imageReader.setInput(imageInputStream, true, true);
+                int width = imageReader.getWidth(0);
+                int height = imageReader.getHeight(0);
+
+                // Filling the size needs the most pixels, fitting uses less
+                double scale = Math.min((double) width / size.width, (double) height / size.height);
+                int subsampling = Math.max(1, (int) (scale / 2));
+                ImageReadParam imageReadParam = imageReader.getDefaultReadParam();
+                imageReadParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = imageReader.read(0, imageReadParam);
+                if (logger.isDebugEnabled()) logger.debug("Decoded " + url + " of " + width + "x" + height + " at " + image.getWidth() + "x" + image.getHeight());
+                return ImageUtil.halveWhileFilling(image, size);
+            }
+            finally {
+                imageReader.dispose();
+            }
+        }
+    }
+
+    private byte[] readBytes(URL url) {
+        if (!url.getProtocol().startsWith("http")) {
+            return ImageUtil.read(url);
+        }
+        try {
+            return coverArtCache.read(url.toString());
+        }
+        catch (IOException e) {
+            logger.error("Error loading image ", e);
+            return new byte[]{};
+        }
+    }
+
+    private static long bytes(BufferedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        return (long) dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+    }
+}
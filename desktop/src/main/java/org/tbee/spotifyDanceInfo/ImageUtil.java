@@ -8,17 +8,25 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ConvolveOp;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 public class ImageUtil {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageUtil.class);
 
+    private static final int NOISE_TABLE_SIZE = 1 << 16; // indexed by 16 random bits
+    private static final double BOX_BLUR_STDDEV = 5.0; // above this the box blurs are faster than the gaussian kernel
+    private static final int BLUR_STRIPE_HEIGHT = 16;
+
     public static byte[] read(URL url) {
         byte[] bytes = new byte[]{};
         try (
@@ -61,6 +69,24 @@ public class ImageUtil {
         return resizedImage.getSubimage(clipX, clipY, clipWidth, clipHeight);
     }
 
+    /**
+     * Scaling down a lot in one step skips pixels, just like subsampling, so the image is halved until halving again would not fill the target size anymore.
+     * The image is then less than twice the target size, from which resizeFilling and resizeFitting scale smoothly.
+     */
+    static public BufferedImage halveWhileFilling(BufferedImage image, Dimension targetSize) {
+        while (image.getWidth() / 2 >= targetSize.getWidth() && image.getHeight() / 2 >= targetSize.getHeight()) {
+            int newWidth = image.getWidth() / 2;
+            int newHeight = image.getHeight() / 2;
+            BufferedImage halvedImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = halvedImage.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(image, 0, 0, newWidth, newHeight, null);
+            g2.dispose();
+            image = halvedImage;
+        }
+        return image;
+    }
+
     static public BufferedImage resizeFitting(BufferedImage image, Dimension targetSize) {
         // Read image
         double imageHeight = (double)image.getHeight();
@@ -82,10 +108,144 @@ public class ImageUtil {
         return resizedImage;
     }
 
-    static public BufferedImage addGaussianBlur(BufferedImage image, double radius) {
-        return getGaussianBlurOp(radius).filter(image, null);
+    /**
+     * Blur using separate horizontal and vertical passes, on the pixel array with the rows spread over the fork-join pool.
+     * The pixels beyond the edge are taken to be the same as the edge pixel, so the borders are blurred as well.
+     * For a large stddev the gaussian is approximated by three box blurs, whose cost does not depend on the radius.
+     */
+    static public BufferedImage addGaussianBlur(BufferedImage image, double stddev) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage argbImage = image;
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            argbImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = argbImage.createGraphics();
+            g2.drawImage(image, 0, 0, null);
+            g2.dispose();
+        }
+        int[] pixels = (int[]) argbImage.getRaster().getDataElements(0, 0, width, height, null);
+
+        // Each pass blurs the rows and writes them as columns, so the second pass blurs the columns and writes them back as rows
+        RowBlur rowBlur = (stddev > BOX_BLUR_STDDEV ? boxBlur(stddev) : gaussianBlur(stddev));
+        int[] transposed = new int[pixels.length];
+        blurRowsTransposed(pixels, width, height, transposed, rowBlur);
+        blurRowsTransposed(transposed, height, width, pixels, rowBlur);
+
+        BufferedImage blurredImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        blurredImage.getRaster().setDataElements(0, 0, width, height, pixels);
+        return blurredImage;
+    }
+
+    /**
+     * Blurs one channel of a row, from the first array into the second; the first array may be used as a scratch buffer.
+     */
+    private interface RowBlur {
+        void blur(int[] in, int[] out, int length);
     }
 
+    static private void blurRowsTransposed(int[] src, int width, int height, int[] dst, RowBlur rowBlur) {
+        // A stripe of rows is written to the columns together, so the writes are not scattered over the whole array
+        int stripes = (height + BLUR_STRIPE_HEIGHT - 1) / BLUR_STRIPE_HEIGHT;
+        IntStream.range(0, stripes).parallel().forEach(stripe -> {
+            int y0 = stripe * BLUR_STRIPE_HEIGHT;
+            int stripeHeight = Math.min(BLUR_STRIPE_HEIGHT, height - y0);
+            int[] in = new int[width];
+            int[] out = new int[width];
+            int[] blurred = new int[stripeHeight * width];
+            for (int row = 0; row < stripeHeight; row++) {
+                int rowStart = (y0 + row) * width;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    for (int x = 0; x < width; x++) {
+                        in[x] = (src[rowStart + x] >>> shift) & 0xff;
+                    }
+                    rowBlur.blur(in, out, width);
+                    for (int x = 0; x < width; x++) {
+                        blurred[row * width + x] |= out[x] << shift;
+                    }
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                for (int row = 0; row < stripeHeight; row++) {
+                    dst[x * height + y0 + row] = blurred[row * width + x];
+                }
+            }
+        });
+    }
+
+    static private RowBlur gaussianBlur(double stddev) {
+        int radius = (int) Math.ceil(4.0 * stddev);
+        float[] kernel = new float[2 * radius + 1];
+        double total = 0.0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = (float) Math.exp(-i * i / (2.0 * stddev * stddev));
+            total += kernel[i + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) kernel[i] /= total;
+
+        return (in, out, length) -> {
+            for (int x = 0; x < length; x++) {
+                float sum = 0.5f; // round
+                if (x >= radius && x < length - radius) {
+                    // the kernel is symmetric, so the pixels at the same distance share the multiplication
+                    sum += kernel[radius] * in[x];
+                    for (int k = 1; k <= radius; k++) {
+                        sum += kernel[radius + k] * (in[x - k] + in[x + k]);
+                    }
+                }
+                else { // near the edges
+                    for (int k = 0; k < kernel.length; k++) {
+                        sum += kernel[k] * in[Math.min(length - 1, Math.max(0, x - radius + k))];
+                    }
+                }
+                out[x] = Math.min(255, (int) sum);
+            }
+        };
+    }
+
+    /**
+     * Three successive box blurs approximate a gaussian, the box sizes follow from the stddev.
+     */
+    static private RowBlur boxBlur(double stddev) {
+        int passes = 3;
+        double idealWidth = Math.sqrt(12 * stddev * stddev / passes + 1);
+        int lowerWidth = (int) Math.floor(idealWidth);
+        if (lowerWidth % 2 == 0) lowerWidth--;
+        int smallerPasses = (int) Math.round((12 * stddev * stddev - passes * lowerWidth * lowerWidth - 4 * passes * lowerWidth - 3 * passes) / (-4.0 * lowerWidth - 4));
+        int[] radiuses = new int[passes];
+        for (int i = 0; i < passes; i++) {
+            radiuses[i] = ((i < smallerPasses ? lowerWidth : lowerWidth + 2) - 1) / 2;
+        }
+
+        return (in, out, length) -> {
+            int[] from = in;
+            int[] to = out;
+            for (int i = 0; i < passes; i++) {
+                boxBlur(from, to, length, radiuses[i]);
+                // ping-pong between the arrays, the last pass (an odd number) ends in out
+                int[] swap = from;
+                from = to;
+                to = swap;
+            }
+        };
+    }
+
+    static private void boxBlur(int[] in, int[] out, int length, int radius) {
+        int size = 2 * radius + 1;
+        int last = length - 1;
+        int sum = 0;
+        for (int k = -radius; k <= radius; k++) {
+            sum += in[Math.min(last, Math.max(0, k))];
+        }
+        for (int x = 0; x < length; x++) {
+            out[x] = (sum + size / 2) / size;
+            sum += in[Math.min(last, x + radius + 1)] - in[Math.max(0, x - radius)];
+        }
+    }
+
+    /**
+     * @deprecated the kernel grows with the square of the stddev, and the borders are not blurred; use addGaussianBlur
+     */
+    @Deprecated
     static public ConvolveOp getGaussianBlurOp(final double stddev) {
         // calculate the kernel matrix
         int radius = (int) Math.ceil(4.0 * stddev);
@@ -132,8 +292,19 @@ public class ImageUtil {
         return addNoise(noiseFactor, 0, 0, image.getWidth(), image.getHeight(), image);
     }
 
+    /**
+     * Add gaussian noise; every pixel gets one gaussian value, that is added to all its bands.
+     * Images with 8 bit bands packed in an int[] (like TYPE_INT_ARGB) are processed directly on that array, with the rows spread over the fork-join pool.
+     */
     static public BufferedImage addNoise(double noiseFactor, int x, int y, int width, int height, BufferedImage image) {
         WritableRaster out = image.getRaster();
+        if (out.getDataBuffer() instanceof DataBufferInt dataBufferInt
+         && out.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel
+         && IntStream.of(sampleModel.getSampleSize()).allMatch(sampleSize -> sampleSize == 8)
+         && IntStream.of(sampleModel.getBitOffsets()).allMatch(bitOffset -> bitOffset % 8 == 0)) {
+            addNoise(noiseFactor, x, y, width, height, out, dataBufferInt, sampleModel);
+            return image;
+        }
 
         int currVal; // the current value
         double newVal; // the new "noisy" value
@@ -158,4 +329,46 @@ public class ImageUtil {
         }
         return image;
     }
+
+    static private void addNoise(double noiseFactor, int x, int y, int width, int height, WritableRaster out, DataBufferInt dataBufferInt, SinglePixelPackedSampleModel sampleModel) {
+        int[] pixels = dataBufferInt.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int bandMask = IntStream.of(sampleModel.getBitMasks()).reduce(0, (a, b) -> a | b); // bits of the pixel that are not a band, are left alone
+        // A subimage shares the array of its parent, the translation tells where it starts
+        int offset = dataBufferInt.getOffset() - out.getSampleModelTranslateY() * scanlineStride - out.getSampleModelTranslateX();
+
+        // Drawing a gaussian per pixel is the expensive part, so pixels pick one from a table of gaussian noise values
+        SplittableRandom random = new SplittableRandom();
+        int[] noiseTable = new int[NOISE_TABLE_SIZE];
+        for (int i = 0; i < NOISE_TABLE_SIZE; i++) {
+            // (int)(sample + noise) truncates, for a non-negative sum that equals sample + floor(noise); limited so the int cannot overflow
+            noiseTable[i] = (int) Math.floor(Math.max(-256.0, Math.min(256.0, noiseFactor * random.nextGaussian())));
+        }
+
+        // Every row has its own random, so the rows can be processed in any order and on any thread
+        long[] rowSeeds = random.longs(height).toArray();
+        IntStream.range(0, height).parallel().forEach(row -> {
+            SplittableRandom rowRandom = new SplittableRandom(rowSeeds[row]);
+            int rowStart = offset + (y + row) * scanlineStride + x;
+            long bits = 0;
+            for (int col = 0; col < width; col++) {
+                if ((col & 3) == 0) {
+                    bits = rowRandom.nextLong(); // four table indexes
+                }
+                int noise = noiseTable[(int) bits & (NOISE_TABLE_SIZE - 1)];
+                bits >>>= 16;
+                int idx = rowStart + col;
+                int pixel = pixels[idx];
+                pixels[idx] = (pixel & ~bandMask)
+                            | (bandMask & (clamp(((pixel >>> 24) & 0xff) + noise) << 24
+                                         | clamp(((pixel >>> 16) & 0xff) + noise) << 16
+                                         | clamp(((pixel >>> 8) & 0xff) + noise) << 8
+                                         | clamp((pixel & 0xff) + noise)));
+            }
+        });
+    }
+
+    static private int clamp(int value) {
+        return (value < 0 ? 0 : (value > 255 ? 255 : value));
+    }
 }
@@ -16,6 +16,7 @@ public abstract class Spotify {
     protected Consumer<Song> currentlyPlayingCallback = song -> {};
     protected Consumer<List<Song>> nextUpCallback = songs -> {};
     protected Consumer<URL> coverArtCallback = url -> {};
+    protected Consumer<List<URL>> nextUpCoverArtCallback = urls -> {};
 
     public Spotify currentlyPlayingCallback(Consumer<Song> currentlyPlayingCallback) {
         this.currentlyPlayingCallback = currentlyPlayingCallback;
@@ -31,4 +32,12 @@ public abstract class Spotify {
         this.coverArtCallback = coverArtCallback;
         return this;
     }
+
+    /**
+     * The cover art of the upcoming tracks, in queue order.
+     */
+    public Spotify nextUpCoverArtCallback(Consumer<List<URL>> nextUpCoverArtCallback) {
+        this.nextUpCoverArtCallback = nextUpCoverArtCallback;
+        return this;
+    }
 }
@@ -1,7 +1,6 @@
 package org.tbee.spotifyDanceInfo;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tbee.sway.SBorderPanel;
@@ -15,22 +14,18 @@ import org.tbee.sway.SLookAndFeel;
 import org.tbee.sway.SOptionPane;
 import org.tbee.sway.SStackedPanel;
 
-import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.Graphics2D;
 import java.awt.GraphicsEnvironment;
-import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.Window;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -41,6 +36,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -65,6 +61,8 @@ public class SpotifyDanceInfo {
     private Song song = null;
     private List<Song> nextUpSongs = List.of();
     private URL covertArtUrl;
+    private CoverArtRenderer coverArtRenderer; // only accessed on the EDT
+    private ImageCache imageCache;
 
     public static void main(String[] args) {
         GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
@@ -113,7 +111,7 @@ public class SpotifyDanceInfo {
                         .maximize()
                         .undecorated()
                         .title("Spotify Dance Info")
-                        .iconImage(readImage(getClass().getResource("/icon.png")))
+                        .iconImage(imageCache().decoded(getClass().getResource("/icon.png")))
                         .onKeyTyped(this::reactToKeyPress)
                         .onScreenChange(this::updateAll)
                         .visible(true);
@@ -150,10 +148,10 @@ public class SpotifyDanceInfo {
                 try (FileInputStream fileInputStream = new FileInputStream(file)) {
                     String fileName = file.getName();
                     if (fileName.endsWith(".tsv")) {
-                        cfg.readMoreTracksTSV("web", fileInputStream, 0, 1);
+                        cfg.readMoreTracksTSV("web", file, 0, 1);
                     }
                     else if (fileName.endsWith(".xlsx")) {
-                        cfg.readMoreTracksExcel("web", new XSSFWorkbook(fileInputStream), 0, 0, 1);
+                        cfg.readMoreTracksXSLX("web", fileInputStream, 0, 0, 1);
                     }
                     else if (fileName.endsWith(".xls")) {
                         cfg.readMoreTracksExcel("web", new HSSFWorkbook(fileInputStream), 0, 0, 1);
@@ -170,13 +168,22 @@ public class SpotifyDanceInfo {
                 .currentlyPlayingCallback(this::updateCurrentlyPlaying)
                 .nextUpCallback(this::updateNextUp)
                 .coverArtCallback(this::generateAndUpdateImage)
+                .nextUpCoverArtCallback(this::prefetchCoverArt)
                 .connect();
     }
 
     private void reactToKeyPress(KeyEvent e) {
         if (e.getKeyChar() == 'r') {
             if (logger.isInfoEnabled()) logger.info("Reload");
+            if (cfg != null) {
+                cfg.stopWatchingForChanges();
+            }
             cfg = null; // force reload
+            if (coverArtRenderer != null) {
+                coverArtRenderer.close();
+            }
+            coverArtRenderer = null;
+            imageCache = null; // the images may have been changed as well
             updateAll();
         }
         else if (e.getKeyChar() == KeyEvent.VK_ESCAPE) {
@@ -210,6 +217,19 @@ public class SpotifyDanceInfo {
         });
     }
 
+    private void updateChanged(Cfg<?> cfg, Set<Cfg.Change> changes) {
+        // Only the texts show the dances, there is no need to rebuild the image when the index changes
+        if (changes.contains(Cfg.Change.CONFIG)) {
+            updateAll(cfg);
+        }
+        else if (changes.contains(Cfg.Change.INDEX)) {
+            SwingUtilities.invokeLater(() -> {
+                updateCurrentlyPlaying();
+                updateNextUp();
+            });
+        }
+    }
+
     private void setFonts() {
         Window window = SFrame.getWindows()[0];
         if (logger.isInfoEnabled()) logger.info("Screen size: " + window.getWidth() + "x" + window.getHeight());
@@ -240,28 +260,41 @@ public class SpotifyDanceInfo {
             return;
         }
 
-        BufferedImage image = readImage(covertArtUrl);
-
-        Dimension frameSize = sFrame.getSize();
-        BufferedImage resizedFillingImage = ImageUtil.resizeFilling(image, frameSize);
-        BufferedImage resizedFittingImage = ImageUtil.resizeFitting(image, frameSize);
-
-        ImageUtil.addNoise(40.0, resizedFillingImage);
-
-        Graphics2D g2 = resizedFillingImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        int centeredX = (resizedFillingImage.getWidth() - resizedFittingImage.getWidth()) / 2;
-        int centeredY = (resizedFillingImage.getHeight() - resizedFittingImage.getHeight()) / 2;
-        g2.drawImage(resizedFittingImage, centeredX, centeredY, null);
-        g2.dispose();
+        // Usually the image was prefetched, then this completes immediately
+        URL url = covertArtUrl;
+        coverArtRenderer().render(url, sFrame.getSize(), cfg().backgroundImageNoise(), cfg().backgroundImageBlur())
+                .thenAccept(image -> SwingUtilities.invokeLater(() -> {
+                    if (url == covertArtUrl) { // the track may have changed in the meantime
+                        this.imageSLabel.setIcon(new ImageIcon(image));
+                    }
+                }))
+                .exceptionally(t -> {
+                    logger.error("Rendering the cover art failed " + url, t);
+                    return null;
+                });
+    }
 
-        ImageUtil.addNoise(cfg.backgroundImageNoise(), resizedFillingImage);
+    private void prefetchCoverArt(List<URL> urls) {
+        SwingUtilities.invokeLater(() -> {
+            if (cfg().useCoverArt()) {
+                coverArtRenderer().prefetch(urls, sFrame.getSize(), cfg().backgroundImageNoise(), cfg().backgroundImageBlur());
+            }
+        });
+    }
 
-        this.imageSLabel.setIcon(new ImageIcon(resizedFillingImage));
+    private CoverArtRenderer coverArtRenderer() {
+        if (coverArtRenderer == null) {
+            coverArtRenderer = new CoverArtRenderer(imageCache(), cfg().backgroundImagePrefetch());
+        }
+        return coverArtRenderer;
     }
 
     private void updateCurrentlyPlaying(Song song) {
         SwingUtilities.invokeLater(() -> {
+            boolean songChanged = song != null && (this.song == null || !this.song.id().equals(song.id()));
+            if (songChanged) {
+                cfg().prioritizeSourcesOf(song.id());
+            }
             this.song = song;
             updateCurrentlyPlaying();
         });
@@ -349,30 +382,21 @@ public class SpotifyDanceInfo {
     }
 
     private ImageIcon readAndResizeImageFilling(URL url) {
-        BufferedImage image = readImage(url);
-        BufferedImage resizedImage = ImageUtil.resizeFilling(image, sFrame.getSize());
+        Dimension size = sFrame.getSize();
+        BufferedImage resizedImage = imageCache().scaled(url, size, "filling", image -> ImageUtil.resizeFilling(image, size));
         return new ImageIcon(resizedImage);
     }
 
-    private BufferedImage readImage(URL url) {
-        try {
-            // Get image contents (check to see if there is any)
-            byte[] bytes = ImageUtil.read(url);
-            if (bytes.length == 0) {
-                bytes = ImageUtil.read(BACKGROUND_IMAGE_URL);
-            }
-
-            // Create image
-            return ImageIO.read(new ByteArrayInputStream(bytes));
-        }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+    private ImageCache imageCache() {
+        if (imageCache == null) {
+            imageCache = new ImageCache(cfg().imageCacheSizeMB() * 1024L * 1024L, BACKGROUND_IMAGE_URL, cfg().coverArtCache());
         }
+        return imageCache;
     }
 
     private CfgDesktop cfg() {
         if (cfg == null) {
-            cfg = new CfgDesktop(true).onChange(this::updateAll);
+            cfg = new CfgDesktop(true).onChange(this::updateChanged);
         }
         return cfg;
     }
@@ -7,10 +7,8 @@ import org.tbee.sway.SOptionPane;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
 import se.michaelthelin.spotify.model_objects.IPlaylistItem;
+import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlaying;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
-import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
-import se.michaelthelin.spotify.model_objects.specification.Image;
-import se.michaelthelin.spotify.model_objects.specification.Track;
 
 import java.awt.Desktop;
 import java.awt.Window;
@@ -24,16 +22,21 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 
 public class SpotifyWebapi extends Spotify {
 
     private static final Logger logger = LoggerFactory.getLogger(SpotifyWebapi.class);
 
     public static final int EXPIRE_MARGIN = 5 * 60;
+    private static final long MIN_POLL_MS = 1000;
+    private static final long MAX_POLL_MS = 3000; // a skipped track or a seek is noticed within this time, like with the fixed rate polling
+    private static final long END_MARGIN_MS = 500; // Spotify needs a moment to switch to the next track
+    private static final long PAUSED_POLL_MS = 2000;
+    private static final long IDLE_POLL_MS = 3000;
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(2);
 
     private final CfgDesktop cfg;
@@ -42,6 +45,7 @@ public class SpotifyWebapi extends Spotify {
 
     private Song currentlyPlaying = null;
     private List<Song> nextUp = null;
+    private final TrackMetadataLoader trackMetadataLoader;
 
     public SpotifyWebapi(CfgDesktop cfg) {
         this(cfg, cfg.webapiClientId(), cfg.webapiClientSecret(), cfg.webapiRedirect(), cfg.webapiRefreshToken());
@@ -58,6 +62,7 @@ public class SpotifyWebapi extends Spotify {
                     .setRedirectUri(new URI(redirectUri))
                     .build();
             this.refreshToken = refreshToken;
+            trackMetadataLoader = new TrackMetadataLoader(() -> spotifyApi, cfg.trackMetadataCache());
         }
         catch (URISyntaxException e) {
             throw new RuntimeException("Problem connecting to Spotify webapi", e);
@@ -109,7 +114,10 @@ public class SpotifyWebapi extends Spotify {
             setAccessToken(authorizationCodeCredentials);
 
             // Start polling
-            scheduledExecutorService.scheduleAtFixedRate(this::pollCurrentlyPlaying, 0, 3, TimeUnit.SECONDS);
+            scheduledExecutorService.execute(this::pollCurrentlyPlaying);
+            if (cfg.coverArtWarmUp()) {
+                cfg.warmUpCoverArt(() -> spotifyApi);
+            }
             return this;
         }
         catch (IOException | SpotifyWebApiException | ParseException e) {
@@ -127,81 +135,132 @@ public class SpotifyWebapi extends Spotify {
         nextUpCallback.accept(Collections.unmodifiableList(nextUp));
     }
 
+    /**
+     * Polls the currently playing track, and then schedules the next poll, see nextPollDelayMs.
+     */
     public void pollCurrentlyPlaying() {
 
-        spotifyApi.getUsersCurrentlyPlayingTrack().build().executeAsync()
+        callAsync(() -> spotifyApi.getUsersCurrentlyPlayingTrack().build().execute())
                 .exceptionally(this::logException)
-                .thenAccept(track -> {
-                    synchronized (SpotifyWebapi.this) {
-
-                        boolean playing = (track != null && track.getIs_playing());
-                        Song song = (!playing ? null : new Song(track.getItem().getId(), "", track.getItem().getName()));
-
-                        // The artist changes afterward, so we cannot do an equals on the songs
-                        String currentlyPlayingId = currentlyPlaying == null ? "" : currentlyPlaying.id();
-                        String songId = song == null ? "" : song.id();
-                        boolean songChanged = !Objects.equals(currentlyPlayingId, songId);
-                        if (!songChanged) {
-                            return;
-                        }
+                .thenApply(track -> {
+                    updateCurrentlyPlaying(track);
+                    return nextPollDelayMs(track);
+                })
+                .exceptionally(t -> {
+                    logger.error("Processing the currently playing track failed", t);
+                    return IDLE_POLL_MS;
+                })
+                .thenAccept(delayMs -> {
+                    if (logger.isDebugEnabled()) logger.debug("Next poll in " + delayMs + " ms");
+                    scheduledExecutorService.schedule(this::pollCurrentlyPlaying, delayMs, TimeUnit.MILLISECONDS);
+                });
+    }
 
-                        currentlyPlaying(song);
+    private void updateCurrentlyPlaying(CurrentlyPlaying track) {
+        synchronized (SpotifyWebapi.this) {
 
-                        if (song == null) {
-                            coverArtCallback.accept(cfg.waitingImageUrl());
-                            nextUp(List.of());
-                        } else {
-                            String id = song.id();
-                            pollCovertArt(id);
-                            pollNextUp(id);
-                            pollArtist(id, t -> updateCurrentlyPlayingArtist(id, t));
-                        }
-                    }
-                });
+            boolean playing = (track != null && track.getIs_playing());
+            Song song = (!playing ? null : new Song(track.getItem().getId(), "", track.getItem().getName()));
+
+            // The artist changes afterward, so we cannot do an equals on the songs
+            String currentlyPlayingId = currentlyPlaying == null ? "" : currentlyPlaying.id();
+            String songId = song == null ? "" : song.id();
+            boolean songChanged = !Objects.equals(currentlyPlayingId, songId);
+            if (!songChanged) {
+                return;
+            }
+
+            currentlyPlaying(song);
+
+            if (song == null) {
+                coverArtCallback.accept(cfg.waitingImageUrl());
+                nextUp(List.of());
+            } else {
+                String id = song.id();
+                trackMetadataLoader.get(track.getItem())
+                        .exceptionally(this::logException)
+                        .thenAccept(trackMetadata -> updateCurrentlyPlayingMetadata(id, trackMetadata));
+                pollNextUp(id);
+            }
+        }
     }
 
-    private void pollArtist(String id, Consumer<Track> callback) {
-        spotifyApi.getTrack(id).build().executeAsync()
-                .exceptionally(this::logException)
-                .thenAccept(track -> callback.accept(track));
+    /**
+     * Near the end of a track the next poll is just after its expected end, so the track change is noticed right away.
+     * Otherwise the delay is capped, because skipping a track, seeking or changing the queue can only be noticed by polling.
+     * No delay is longer than the fixed rate the polling used to have.
+     */
+    private long nextPollDelayMs(CurrentlyPlaying track) {
+        if (track == null || track.getItem() == null) {
+            return IDLE_POLL_MS;
+        }
+        if (!track.getIs_playing()) {
+            return PAUSED_POLL_MS;
+        }
+        Integer progressMs = track.getProgress_ms();
+        Integer durationMs = track.getItem().getDurationMs();
+        if (progressMs == null || durationMs == null) {
+            return MIN_POLL_MS;
+        }
+        long remainingMs = durationMs - progressMs;
+        return Math.clamp(remainingMs + END_MARGIN_MS, MIN_POLL_MS, MAX_POLL_MS);
     }
 
-    private void updateCurrentlyPlayingArtist(String id, Track track) {
+    private void updateCurrentlyPlayingMetadata(String id, TrackMetadata trackMetadata) {
+        if (trackMetadata == null) {
+            return;
+        }
         ifSongIsStillPlaying(id, () -> {
-            ArtistSimplified[] artists = track.getArtists();
-            if (artists.length == 0) {
-                return;
+            if (!trackMetadata.artist().isBlank()) {
+                currentlyPlaying(currentlyPlaying.withArtist(trackMetadata.artist()));
             }
-            String name = artists[0].getName();
-            Song song = currentlyPlaying.withArtist(name);
-            currentlyPlaying(song);
+            coverArtCallback.accept(trackMetadata.coverArtUrl() == null ? null : url(trackMetadata.coverArtUrl()));
         });
     }
 
+    private static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public void pollNextUp(String id) {
-        spotifyApi.getTheUsersQueue().build().executeAsync()
+        callAsync(() -> spotifyApi.getTheUsersQueue().build().execute())
                 .exceptionally(this::logException)
                 .thenAccept(playbackQueue -> {
                     ifSongIsStillPlaying(id, () -> {
                         List<Song> songs = new ArrayList<>();
+                        List<IPlaylistItem> withoutMetadata = new ArrayList<>();
+                        List<URL> coverArtUrls = new ArrayList<>();
                         for (IPlaylistItem playlistItem : playbackQueue.getQueue()) {
                             //System.out.println("    | " + playlistItem.getId() + " | \"" + playlistItem.getName() + "\" | # " + playlistItem.getHref());
-                            songs.add(new Song(playlistItem.getId(), "", playlistItem.getName()));
+                            TrackMetadata trackMetadata = TrackMetadata.of(playlistItem);
+                            songs.add(new Song(playlistItem.getId(), trackMetadata == null ? "" : trackMetadata.artist(), playlistItem.getName()));
+                            if (trackMetadata == null) {
+                                withoutMetadata.add(playlistItem);
+                            }
+                            else if (trackMetadata.coverArtUrl() != null) {
+                                coverArtUrls.add(url(trackMetadata.coverArtUrl()));
+                            }
                         }
                         nextUp(songs);
+                        nextUpCoverArtCallback.accept(coverArtUrls);
 
-                        // Update artist
-                        songs.forEach(song -> pollArtist(song.id(), t -> updateNextUpArtist(song.id(), t)));
+                        // Update the artists that were not in the queue
+                        withoutMetadata.forEach(playlistItem -> trackMetadataLoader.get(playlistItem.getId())
+                                .exceptionally(this::logException)
+                                .thenAccept(trackMetadata -> updateNextUpArtist(playlistItem.getId(), trackMetadata)));
                     });
                 });
     }
 
-    private void updateNextUpArtist(String id, Track track) {
-        ArtistSimplified[] artists = track.getArtists();
-        if (artists.length == 0) {
+    private void updateNextUpArtist(String id, TrackMetadata trackMetadata) {
+        if (trackMetadata == null || trackMetadata.artist().isBlank()) {
             return;
         }
-        String name = artists[0].getName();
+        String name = trackMetadata.artist();
 
         synchronized (SpotifyWebapi.this) {
             nextUp.stream()
@@ -215,20 +274,11 @@ public class SpotifyWebapi extends Spotify {
         }
     }
 
-    public void pollCovertArt(String id) {
-        spotifyApi.getTrack(id).build().executeAsync()
-                .exceptionally(this::logException)
-                .thenAccept(track -> {
-                    ifSongIsStillPlaying(id, () -> {
-                        try {
-                            Image[] images = track.getAlbum().getImages();
-                            //Arrays.stream(images).forEach(i -> System.out.println(i.getUrl() + " " + i.getWidth() + "x" + i.getHeight()));
-                            coverArtCallback.accept(images.length == 0 ? null : new URL(images[0].getUrl()));
-                        } catch (MalformedURLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-                });
+    /**
+     * All webapi calls go through the scheduler, the display has priority over reading playlists.
+     */
+    private <R> CompletableFuture<R> callAsync(SpotifyCallScheduler.SpotifyCall<R> spotifyCall) {
+        return SpotifyCallScheduler.instance().callAsync(spotifyApi.getClientId(), SpotifyCallScheduler.Priority.LIVE, spotifyCall);
     }
 
     private <T> T logException(Throwable t) {
@@ -0,0 +1,85 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ImageCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void decodedFillsTheSize() throws IOException {
+        ImageCache imageCache = imageCache();
+        URL url = jpg(4000, 3000);
+        assertFills(new Dimension(1920, 1080), imageCache.decoded(url, new Dimension(1920, 1080)));
+        assertFills(new Dimension(640, 360), imageCache.decoded(url, new Dimension(640, 360)));
+        assertFills(new Dimension(300, 1200), imageCache.decoded(url, new Dimension(300, 1200))); // a portrait screen needs the height
+    }
+
+    @Test
+    public void decodedSmallImageIsNotScaled() throws IOException {
+        BufferedImage image = imageCache().decoded(jpg(640, 640), new Dimension(1920, 1080));
+        Assertions.assertEquals(640, image.getWidth());
+        Assertions.assertEquals(640, image.getHeight());
+    }
+
+    @Test
+    public void undecodableImageUsesFallback() throws IOException {
+        ImageCache imageCache = new ImageCache(100L * 1024 * 1024, jpg(640, 640), new CoverArtCache(tempDir.resolve("coverArt"), 1024 * 1024));
+        BufferedImage image = imageCache.decoded(broken(), new Dimension(1920, 1080));
+        Assertions.assertEquals(640, image.getWidth());
+        Assertions.assertEquals(640, image.getHeight());
+    }
+
+    @Test
+    public void undecodableImageWithoutFallback() throws IOException {
+        ImageCache imageCache = imageCache();
+        URL url = broken();
+        Assertions.assertNull(imageCache.decoded(url));
+        Assertions.assertNull(imageCache.decoded(url, new Dimension(1920, 1080)));
+        Assertions.assertNull(imageCache.decoded(url)); // not cached
+    }
+
+    /**
+     * The image must be large enough to fill the size without scaling up, but not so large it wastes memory.
+     */
+    private static void assertFills(Dimension size, BufferedImage image) {
+        Assertions.assertTrue(image.getWidth() >= size.width && image.getHeight() >= size.height, image.getWidth() + "x" + image.getHeight() + " does not fill " + size);
+        Assertions.assertTrue(image.getWidth() < size.width * 2 || image.getHeight() < size.height * 2, image.getWidth() + "x" + image.getHeight() + " is more than twice " + size);
+    }
+
+    private ImageCache imageCache() {
+        return new ImageCache(100L * 1024 * 1024, null, new CoverArtCache(tempDir.resolve("coverArt"), 1024 * 1024));
+    }
+
+    private URL broken() throws IOException {
+        Path path = tempDir.resolve("broken.jpg");
+        Files.writeString(path, "not an image");
+        return path.toUri().toURL();
+    }
+
+    private URL jpg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.MAGENTA));
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+        File file = tempDir.resolve(width + "x" + height + ".jpg").toFile();
+        ImageIO.write(image, "jpg", file);
+        return file.toURI().toURL();
+    }
+}
@@ -0,0 +1,80 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+public class ImageUtilTest {
+
+    private static final int GRAY = 0xFF808080;
+
+    @Test
+    public void noiseOnSubimage() {
+        BufferedImage image = image(40, 30, GRAY);
+        Rectangle area = new Rectangle(10, 5, 20, 10);
+        ImageUtil.addNoise(40.0, image.getSubimage(area.x, area.y, area.width, area.height)); // shares the pixel array of the image
+
+        assertNoiseOnlyIn(area, image);
+    }
+
+    @Test
+    public void noiseOnArea() {
+        BufferedImage image = image(40, 30, GRAY);
+        Rectangle area = new Rectangle(3, 12, 25, 8);
+        ImageUtil.addNoise(40.0, area.x, area.y, area.width, area.height, image);
+
+        assertNoiseOnlyIn(area, image);
+    }
+
+    @Test
+    public void blurConstantImageWithKernel() {
+        assertBlurKeepsConstantImage(2.0);
+    }
+
+    @Test
+    public void blurConstantImageWithBoxes() {
+        assertBlurKeepsConstantImage(20.0);
+    }
+
+    /**
+     * The edge pixels are repeated beyond the border, so a constant image stays the same, also along the borders.
+     */
+    private static void assertBlurKeepsConstantImage(double stddev) {
+        int argb = 0xFF336699;
+        BufferedImage blurredImage = ImageUtil.addGaussianBlur(image(50, 37, argb), stddev);
+        Assertions.assertEquals(50, blurredImage.getWidth());
+        Assertions.assertEquals(37, blurredImage.getHeight());
+        for (int y = 0; y < blurredImage.getHeight(); y++) {
+            for (int x = 0; x < blurredImage.getWidth(); x++) {
+                Assertions.assertEquals(argb, blurredImage.getRGB(x, y), "pixel " + x + "," + y + " changed");
+            }
+        }
+    }
+
+    private static void assertNoiseOnlyIn(Rectangle area, BufferedImage image) {
+        int changed = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if (!area.contains(x, y)) {
+                    Assertions.assertEquals(GRAY, image.getRGB(x, y), "pixel " + x + "," + y + " is outside the area");
+                }
+                else if (image.getRGB(x, y) != GRAY) {
+                    changed++;
+                }
+            }
+        }
+        Assertions.assertTrue(changed > area.width * area.height / 2, "only " + changed + " pixels have noise");
+    }
+
+    private static BufferedImage image(int width, int height, int argb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+}
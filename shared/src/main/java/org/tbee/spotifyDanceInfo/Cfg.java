@@ -9,18 +9,13 @@ import org.apache.hc.core5.http.ParseException;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tbee.tecl.TECL;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
-import se.michaelthelin.spotify.model_objects.specification.Paging;
-import se.michaelthelin.spotify.model_objects.specification.Playlist;
-import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -29,21 +24,29 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
 
 public abstract class Cfg<T> {
     private static final Logger logger = LoggerFactory.getLogger(Cfg.class);
@@ -53,16 +56,43 @@ public abstract class Cfg<T> {
     private static final String TRACKS = "/tracks";
     private static final String DANCES = "/dances";
     private static final String PLAYLISTS = "/playlists";
+    private static final String CACHE = "/cache";
+    private static final String MORE_TRACKS_TSV = "/moreTracks/tsv";
+    private static final String MORE_TRACKS_XSLX = "/moreTracks/xslx";
+    private static final String MORE_TRACKS_XSL = "/moreTracks/xsl";
 
-    private static final ExecutorService executorService = Executors.newCachedThreadPool();
+    private static final ExecutorService pageExecutorService = Executors.newVirtualThreadPerTaskExecutor(); // concurrency is limited by the PlaylistLoader
+    private final LoaderScheduler.Group loaderGroup = LoaderScheduler.instance().group();
     private final AtomicInteger numberOfBackgroundTasksCounter = new AtomicInteger(0);
-    private final List<Consumer<Cfg<?>>> onChangeListeners = Collections.synchronizedList(new ArrayList<>());
+    private final List<BiConsumer<Cfg<?>, Set<Change>>> onChangeListeners = Collections.synchronizedList(new ArrayList<>());
+    private static final ScheduledExecutorService onChangeExecutorService = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("cfgOnChange").daemon().factory());
+    private static final long ON_CHANGE_DELAY_MS = 100;
+    private final Set<Change> pendingChanges = EnumSet.noneOf(Change.class); // guarded by itself
     private final boolean runInBackground;
+    private final Cfg<?> base;
+    private final Set<Cfg<?>> overlays = Collections.newSetFromMap(new WeakHashMap<>()); // guarded by itself, weak so a session's overlay can be collected when the session ends
+
+    protected volatile TECL tecl; // replaced when the configuration is reloaded
+    // The index is replaced as a whole whenever a source has been read, so lookups never block on a background loader
+    private volatile TrackIndex trackIndex = TrackIndex.EMPTY;
+    private final Object trackIndexLock = new Object();
+    private HttpSourceCache httpSourceCache;
+    private TrackMetadataCache trackMetadataCache;
+    private CoverArtCache coverArtCache;
+    private final String configFileName;
+    private Path snapshotPath;
+    private TrackIndex snapshotIndex;
+    private FileWatcher fileWatcher;
+    private PlaylistLoader playlistLoader;
 
-    protected TECL tecl;
-    protected Map<String, List<String>> songIdToDanceNames = Collections.synchronizedMap(new HashMap<>());
-    // Playlist allow for the same track to be in multiple playlists, so the put behavior is different
-    protected Map<String, List<String>> songIdToDanceNamesPlaylists = Collections.synchronizedMap(new HashMap<>());
+    /**
+     * What changed, so a listener can skip work that does not apply.
+     */
+    public enum Change {
+        INDEX, // the dances of one or more tracks may have changed
+        TASKS, // the number of active background tasks changed
+        CONFIG // the configuration itself was reloaded
+    }
 
     public Cfg() {
         this(CONFIG_TECL, true, false);
@@ -74,6 +104,8 @@ public abstract class Cfg<T> {
 
     public Cfg(String configFileName, boolean runInBackground, boolean generateConfigFileIfNotFound) {
         this.runInBackground = runInBackground;
+        this.configFileName = configFileName;
+        this.base = null;
         try {
             tecl = TECL.parser().findAndParse(configFileName);
             if (tecl == null) {
@@ -89,6 +121,21 @@ public abstract class Cfg<T> {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        readTracks();
+    }
+
+    /**
+     * Create an overlay on a base Cfg: the configuration and the sources read by the base are shared, and not read again.
+     * This Cfg only holds the sources that are added to it, like an uploaded file or playlists.
+     */
+    public Cfg(Cfg<?> base) {
+        this.runInBackground = base.runInBackground;
+        this.configFileName = base.configFileName;
+        this.base = base;
+        this.tecl = base.tecl;
+        synchronized (base.overlays) {
+            base.overlays.add(this);
+        }
     }
 
     private static void createFromExampleConfigFile(String configFileName) throws IOException {
@@ -102,20 +149,213 @@ public abstract class Cfg<T> {
         }
     }
 
+    private void readTracks() {
+        TrackDanceStore tracks = new TrackDanceStore();
+        tecl.grp(TRACKS).rows().forEach(trackTecl -> {
+            String id = trackTecl.str("id");
+            String danceText = trackTecl.str("dance", "");
+            if (id != null && !danceText.isBlank() && tracks.get(id) == null) { // the first row for a track wins
+                tracks.put(id, danceTextToDances(danceText));
+            }
+        });
+        publish(new TrackIndex.Source(CONFIG_TECL + TRACKS, TrackIndex.Kind.CONFIG, tracks));
+    }
+
+    /**
+     * Serve lookups from the snapshot of a previous run, until the sources have been revalidated.
+     * The snapshot is updated whenever the background tasks have completed.
+     * An overlay does not use a snapshot: there can be many at the same time, and the base already serves the configured sources.
+     */
+    protected T useSnapshot() {
+        if (base != null) {
+            return (T)this;
+        }
+        String configPath = new File(configFileName).getAbsolutePath();
+        snapshotPath = cacheDirectory().resolve("trackIndex-" + HttpSourceCache.sha256(configPath.getBytes(StandardCharsets.UTF_8)).substring(0, 16) + ".bin");
+
+        // Only use the sources that are still configured
+        Set<String> configuredSourceKeys = configuredSourceKeys();
+        List<TrackIndex.Source> sources = TrackIndexSnapshot.read(snapshotPath).stream()
+                .filter(source -> configuredSourceKeys.contains(source.key()))
+                .toList();
+
+        synchronized (trackIndexLock) {
+            trackIndex = trackIndex.with(sources);
+            snapshotIndex = trackIndex;
+        }
+        notifyOnChangeListeners(Change.INDEX);
+        return (T)this;
+    }
+
+    private Set<String> configuredSourceKeys() {
+        Set<String> configuredSourceKeys = new HashSet<>();
+        List.of(MORE_TRACKS_TSV, MORE_TRACKS_XSLX, MORE_TRACKS_XSL).forEach(grp -> {
+            tecl.grp(grp).rows().forEach(moreTrackTecl -> configuredSourceKeys.add(moreTrackTecl.str("uri")));
+        });
+        tecl.grp(PLAYLISTS).rows().forEach(playlistTecl -> configuredSourceKeys.add(PLAYLISTS + "/" + playlistTecl.str("id")));
+        return configuredSourceKeys;
+    }
+
+    private synchronized void saveSnapshot() {
+        TrackIndex trackIndex = this.trackIndex; // the index is immutable, so it can be written without blocking the readers
+        if (snapshotPath == null || trackIndex == snapshotIndex) {
+            return;
+        }
+        try {
+            TrackIndexSnapshot.write(snapshotPath, trackIndex.sources());
+            snapshotIndex = trackIndex;
+        }
+        catch (IOException e) {
+            logger.error("Writing snapshot failed, it will be tried again after the next load " + snapshotPath, e);
+        }
+    }
+
+    /**
+     * A source that was read before (possibly from the snapshot) with the same fingerprint, does not need to be parsed again.
+     */
+    private boolean isUnchanged(String key, String fingerprint) {
+        TrackIndex.Source source = trackIndex.source(key);
+        if (fingerprint == null || source == null || !fingerprint.equals(source.fingerprint())) {
+            return false;
+        }
+        if (logger.isInfoEnabled()) logger.info("Unchanged " + key);
+        return true;
+    }
+
     public T readMoreTracks() {
+        return readMoreTracks(moreTrackTecl -> true);
+    }
+
+    private T readMoreTracks(Predicate<TECL> filter) {
         // Loop over the moreTrack configurations
-        tecl.grp("/moreTracks/tsv").rows().forEach(moreTrackTecl -> {
-            runInBackground(() -> readMoreTracksTSV(moreTrackTecl));
+        tecl.grp(MORE_TRACKS_TSV).rows().forEach(moreTrackTecl -> {
+            if (filter.test(moreTrackTecl)) {
+                runInBackground(moreTrackTecl.str("uri"), () -> readMoreTracksTSV(moreTrackTecl));
+            }
         });
-        tecl.grp("/moreTracks/xslx").rows().forEach(moreTrackTecl -> {
-            runInBackground(() -> readMoreTracksXSLX(moreTrackTecl));
+        tecl.grp(MORE_TRACKS_XSLX).rows().forEach(moreTrackTecl -> {
+            if (filter.test(moreTrackTecl)) {
+                runInBackground(moreTrackTecl.str("uri"), () -> readMoreTracksXSLX(moreTrackTecl));
+            }
         });
-        tecl.grp("/moreTracks/xsl").rows().forEach(moreTrackTecl -> {
-            runInBackground(() -> readMoreTracksXSL(moreTrackTecl));
+        tecl.grp(MORE_TRACKS_XSL).rows().forEach(moreTrackTecl -> {
+            if (filter.test(moreTrackTecl)) {
+                runInBackground(moreTrackTecl.str("uri"), () -> readMoreTracksXSL(moreTrackTecl));
+            }
         });
         return (T)this;
     }
 
+    /**
+     * Watch config.tecl and the local moreTracks files.
+     * A changed file is re-read into the index, while lookups keep using the current index until it is replaced.
+     * A changed config.tecl is reloaded; only the sources that were changed in it are re-read.
+     */
+    public T startWatchingForChanges() {
+        try {
+            fileWatcher = new FileWatcher(this::filesChanged);
+            watchConfiguredFiles();
+        }
+        catch (IOException e) {
+            logger.error("Cannot watch for changes", e);
+        }
+        return (T)this;
+    }
+
+    public void stopWatchingForChanges() {
+        if (fileWatcher == null) {
+            return;
+        }
+        try {
+            fileWatcher.close();
+        }
+        catch (IOException e) {
+            logger.warn("Problem stopping the file watcher", e);
+        }
+        fileWatcher = null;
+    }
+
+    private void watchConfiguredFiles() throws IOException {
+        Set<Path> paths = new HashSet<>();
+        paths.add(configPath());
+        paths.addAll(localMoreTracksFiles().values());
+        fileWatcher.watch(paths);
+    }
+
+    private Path configPath() {
+        return Path.of(configFileName).toAbsolutePath().normalize();
+    }
+
+    /**
+     * @return uri to path
+     */
+    private Map<String, Path> localMoreTracksFiles() {
+        Map<String, Path> uriToPath = new HashMap<>();
+        List.of(MORE_TRACKS_TSV, MORE_TRACKS_XSLX, MORE_TRACKS_XSL).forEach(grp -> {
+            tecl.grp(grp).rows().forEach(moreTrackTecl -> {
+                String uri = moreTrackTecl.str("uri");
+                File file = (uri == null || uri.isEmpty() ? null : localFile(URI.create(uri)));
+                if (file != null) {
+                    uriToPath.put(uri, file.toPath().toAbsolutePath().normalize());
+                }
+            });
+        });
+        return uriToPath;
+    }
+
+    private void filesChanged(Set<Path> paths) {
+        if (paths.contains(configPath())) {
+            reloadConfig();
+            return;
+        }
+        Map<String, Path> uriToPath = localMoreTracksFiles();
+        readMoreTracks(moreTrackTecl -> {
+            Path path = uriToPath.get(moreTrackTecl.str("uri"));
+            return path != null && paths.contains(path);
+        });
+    }
+
+    private void reloadConfig() {
+        try {
+            TECL newTecl = TECL.parser().findAndParse(configFileName);
+            if (newTecl == null) {
+                logger.warn("Configuration " + configFileName + " not found, keeping the current one");
+                return;
+            }
+            if (logger.isInfoEnabled()) logger.info("Reloading " + configFileName);
+            tecl = newTecl;
+        }
+        catch (IOException | RuntimeException e) {
+            logger.error("Reloading " + configFileName + " failed, keeping the current one", e);
+            return;
+        }
+
+        readTracks();
+
+        // Remove the sources that are no longer configured (sources without a fingerprint were not configured, but uploaded)
+        Set<String> configuredSourceKeys = configuredSourceKeys();
+        synchronized (trackIndexLock) {
+            for (TrackIndex.Source source : trackIndex.sources()) {
+                if (source.kind() != TrackIndex.Kind.CONFIG && source.fingerprint() != null && !configuredSourceKeys.contains(source.key())) {
+                    trackIndex = trackIndex.without(source.key());
+                }
+            }
+        }
+
+        // Unchanged sources have the same fingerprint and are skipped
+        readMoreTracks();
+        if (playlistLoader != null) {
+            readPlaylists(playlistLoader);
+        }
+        try {
+            watchConfiguredFiles();
+        }
+        catch (IOException e) {
+            logger.error("Cannot watch for changes", e);
+        }
+        notifyOnChangeListeners(Change.CONFIG);
+    }
+
     private void readMoreTracksTSV(TECL moreTrack) { // can't use the tecl() call here otherwise there would be an endless loop
         try {
             String uri = moreTrack.str("uri");
@@ -125,15 +365,28 @@ public abstract class Cfg<T> {
             int idIdx = moreTrack.integer("idIdx", 0);
             int danceIdx = moreTrack.integer("danceIdx", 1);
 
-            InputStream inputStream = readContents(new URI(uri));
+            // Local files and cached downloads are scanned from the file
+            Contents contents = readContents(new URI(uri));
+            String fingerprint = fingerprint(contents, moreTrack);
+            if (isUnchanged(uri, fingerprint)) {
+                return;
+            }
 
-            readMoreTracksTSV(uri, inputStream, idIdx, danceIdx);
+            TrackDanceStore tracks = new TrackDanceStore();
+            int cnt = new TsvTrackScanner(idIdx, danceIdx, tracks, this::danceTextToDances).scan(contents.file().toPath());
+            publishMoreTracks(uri, fingerprint, tracks, cnt);
         }
         catch (Exception e) {
             logger.error("Reading TSV failed", e);
         }
     }
 
+    public void readMoreTracksTSV(String uri, File file, int idIdx, int danceIdx) throws IOException {
+        TrackDanceStore tracks = new TrackDanceStore();
+        int cnt = new TsvTrackScanner(idIdx, danceIdx, tracks, this::danceTextToDances).scan(file.toPath());
+        publishMoreTracks(uri, null, tracks, cnt);
+    }
+
     public void readMoreTracksTSV(String uri, InputStream inputStream, int idIdx, int danceIdx) throws IOException {
         // Parse the inputStream
         CSVParser parser = new CSVParserBuilder()
@@ -147,6 +400,7 @@ public abstract class Cfg<T> {
                     .withKeepCarriageReturn(false)
                     .build();
         ) {
+            TrackDanceStore tracks = new TrackDanceStore();
             csvReader.forEach(line -> {
 
                 // Extract id and dance
@@ -158,10 +412,11 @@ public abstract class Cfg<T> {
 
                 // Store
                 if (logger.isDebugEnabled()) logger.debug("Adding track" + id + " at line " + (csvReader.getLinesRead() - 1) + " from " + uri);
-                songIdToDanceNames.put(id, dances);
+                tracks.put(id, dances);
             });
+            publish(new TrackIndex.Source(uri, TrackIndex.Kind.MORE_TRACKS, tracks));
             if (logger.isInfoEnabled()) logger.info("Read " + (csvReader.getLinesRead() - 1) + " track id(s) from " + uri);
-            notifyOnChangeListeners();
+            notifyOnChangeListeners(Change.INDEX);
         }
     }
 
@@ -172,17 +427,49 @@ public abstract class Cfg<T> {
                 return;
             }
 
-            InputStream inputStream = readContents(new URI(uri));
+            int sheetIdx = moreTrack.integer("sheetIdx", 0);
+            int idIdx = moreTrack.integer("idIdx", 0);
+            int danceIdx = moreTrack.integer("danceIdx", 1);
 
-            // Parse the inputStream
-            Workbook xssfWorkbook = new XSSFWorkbook(inputStream);
-            readMoreTracksExcel(moreTrack, uri, xssfWorkbook);
+            // Stream the sheet, a file can be read without copying it into memory
+            Contents contents = readContents(new URI(uri));
+            String fingerprint = fingerprint(contents, moreTrack);
+            if (isUnchanged(uri, fingerprint)) {
+                return;
+            }
+            TrackDanceStore tracks = new TrackDanceStore();
+            int cnt = XlsxTrackReader.read(contents.file(), sheetIdx, idIdx, danceIdx, (id, danceText) -> addTrack(tracks, uri, id, danceText));
+            publishMoreTracks(uri, fingerprint, tracks, cnt);
         }
         catch (Exception e) {
             logger.error("Reading XSLX failed", e);
         }
     }
 
+    /**
+     * Reads the sheet of a xlsx, streaming only the id and dance columns.
+     */
+    public void readMoreTracksXSLX(String uri, InputStream inputStream, int sheetIdx, int idIdx, int danceIdx) throws IOException {
+        TrackDanceStore tracks = new TrackDanceStore();
+        int cnt = XlsxTrackReader.read(inputStream, sheetIdx, idIdx, danceIdx, (id, danceText) -> addTrack(tracks, uri, id, danceText));
+        publishMoreTracks(uri, null, tracks, cnt);
+    }
+
+    private void addTrack(TrackDanceStore tracks, String uri, String id, String danceText) {
+        // Possibly split on comma
+        List<String> dances = danceTextToDances(danceText);
+
+        // Store
+        if (logger.isDebugEnabled()) logger.debug("Adding track" + id + " from " + uri);
+        tracks.put(id, dances);
+    }
+
+    private void publishMoreTracks(String uri, String fingerprint, TrackDanceStore tracks, int cnt) {
+        publish(new TrackIndex.Source(uri, TrackIndex.Kind.MORE_TRACKS, fingerprint, tracks));
+        if (logger.isInfoEnabled()) logger.info("Read " + cnt + " track id(s) from " + uri);
+        notifyOnChangeListeners(Change.INDEX);
+    }
+
     private void readMoreTracksXSL(TECL moreTrack) { // can't use the tecl() call here otherwise there would be an endless loop
         try {
             String uri = moreTrack.str("uri");
@@ -190,28 +477,40 @@ public abstract class Cfg<T> {
                 return;
             }
 
-            InputStream inputStream = readContents(new URI(uri));
-
-            // Parse the inputStream
-            HSSFWorkbook hssfWorkbook = new HSSFWorkbook(inputStream);
-            readMoreTracksExcel(moreTrack, uri, hssfWorkbook);
+            Contents contents = readContents(new URI(uri));
+            String fingerprint = fingerprint(contents, moreTrack);
+            if (isUnchanged(uri, fingerprint)) {
+                return;
+            }
+            try (
+                InputStream inputStream = new FileInputStream(contents.file());
+            ) {
+                // Parse the inputStream
+                HSSFWorkbook hssfWorkbook = new HSSFWorkbook(inputStream);
+                readMoreTracksExcel(moreTrack, uri, fingerprint, hssfWorkbook);
+            }
         }
         catch (Exception e) {
             logger.error("Reading XSL failed", e);
         }
     }
 
-    private void readMoreTracksExcel(TECL moreTrack, String uri, Workbook workbook) {
+    private void readMoreTracksExcel(TECL moreTrack, String uri, String fingerprint, Workbook workbook) {
         int sheetIdx = moreTrack.integer("sheetIdx", 0);
         int idIdx = moreTrack.integer("idIdx", 0);
         int danceIdx = moreTrack.integer("danceIdx", 1);
 
-        readMoreTracksExcel(uri, workbook, sheetIdx, idIdx, danceIdx);
+        readMoreTracksExcel(uri, fingerprint, workbook, sheetIdx, idIdx, danceIdx);
     }
 
     public void readMoreTracksExcel(String uri, Workbook workbook, int sheetIdx, int idIdx, int danceIdx) {
+        readMoreTracksExcel(uri, null, workbook, sheetIdx, idIdx, danceIdx);
+    }
+
+    private void readMoreTracksExcel(String uri, String fingerprint, Workbook workbook, int sheetIdx, int idIdx, int danceIdx) {
         Sheet hssfSheet = workbook.getSheetAt(sheetIdx);
 
+        TrackDanceStore tracks = new TrackDanceStore();
         AtomicInteger cnt = new AtomicInteger(0);
         hssfSheet.forEach(row -> {
             // skip first row
@@ -228,60 +527,55 @@ public abstract class Cfg<T> {
 
             // Store
             if (logger.isDebugEnabled()) logger.debug("Adding track" + id + " at line " + cnt.get() + " from " + uri);
-            songIdToDanceNames.put(id, dances);
+            tracks.put(id, dances);
         });
+        publish(new TrackIndex.Source(uri, TrackIndex.Kind.MORE_TRACKS, fingerprint, tracks));
         if (logger.isInfoEnabled()) logger.info("Read " + (cnt.get() - 1) + " track id(s) from " + uri);
-        notifyOnChangeListeners();
+        notifyOnChangeListeners(Change.INDEX);
     }
 
     /**
      * This method must be called after the spotify api was connected.
+     * The api is fetched once, and shared by all playlists.
      */
     public void readPlaylists(Supplier<SpotifyApi> spotifyApiSupplier) {
+        readPlaylists(new PlaylistLoader(spotifyApiSupplier.get(), pageExecutorService));
+    }
+
+    private void readPlaylists(PlaylistLoader playlistLoader) {
+        this.playlistLoader = playlistLoader; // for reloading
         tecl.grp(PLAYLISTS).rows().forEach(playlistTecl -> {
-            runInBackground(() -> readPlaylist(spotifyApiSupplier, playlistTecl));
+            runInBackground(PLAYLISTS + "/" + playlistTecl.str("id"), () -> readPlaylist(playlistLoader, playlistTecl));
         });
     }
 
-    private void readPlaylist(Supplier<SpotifyApi> spotifyApiSupplier, TECL playlistTecl) {
+    private void readPlaylist(PlaylistLoader playlistLoader, TECL playlistTecl) {
         String danceText = playlistTecl.str("dance");
         List<String> dancesForThisPlaylist = danceTextToDances(danceText);
 
         try {
+            // The fingerprint combines the dances and the playlist's snapshot id, a playlist that did not change is not read again
             String playlistId = playlistTecl.str("id");
-            Playlist playlist = spotifyApiSupplier.get()
-                    .getPlaylist(playlistId).build().execute();
-
-            final int limit = 100;
-            int offset = 0;
-            int cnt = 0;
-            while (offset >= 0) {
-                Paging<PlaylistTrack> playlistTrackPaging = spotifyApiSupplier.get()
-                        .getPlaylistsItems(playlistId)
-                        .limit(limit)
-                        .offset(offset)
-                        .build().execute();
-                for (PlaylistTrack playlistTrack : playlistTrackPaging.getItems()) {
-                    String trackId = playlistTrack.getTrack().getId();
-                    if (logger.isDebugEnabled()) logger.debug("Adding from playlist " + playlist.getName() + ": " + playlistTrack.getTrack().getName() + " as " + dancesForThisPlaylist);
-
-                    // If there are already dances assigned, merge these with the ones for this playlist
-                    // This allows for songs to be present in, say, chacha and west coast swing playlists
-                    List<String> existingDances = songIdToDanceNamesPlaylists.get(trackId);
-                    if (existingDances == null) {
-                        existingDances = List.of();
-                    }
-                    List<String> dances = Stream.concat(existingDances.stream(), dancesForThisPlaylist.stream())
-                            .distinct()
-                            .toList();
-
-                    songIdToDanceNamesPlaylists.put(trackId, dances);
-                    cnt++;
-                }
-                offset = (playlistTrackPaging.getNext() == null ? -1 : offset + limit);
+            String key = PLAYLISTS + "/" + playlistId;
+            String fingerprintPrefix = String.join(",", dancesForThisPlaylist) + "@";
+            TrackIndex.Source source = trackIndex.source(key);
+            String knownSnapshotId = null;
+            if (source != null && source.fingerprint() != null && source.fingerprint().startsWith(fingerprintPrefix)) {
+                knownSnapshotId = source.fingerprint().substring(fingerprintPrefix.length());
+            }
+            PlaylistLoader.Result playlist = playlistLoader.load(playlistId, knownSnapshotId);
+            if (playlist == null) {
+                if (logger.isInfoEnabled()) logger.info("Unchanged playlist " + playlistId);
+                return;
             }
-            if (logger.isInfoEnabled()) logger.info("Read " + cnt + " track id(s) from playlist " + playlist.getName() + " by " + playlist.getOwner().getDisplayName());
-            notifyOnChangeListeners();
+
+            // All tracks of a playlist have the same dances, merging with other playlists is done by the index
+            TrackDanceStore tracks = new TrackDanceStore();
+            int ref = tracks.danceCombinationRef(dancesForThisPlaylist);
+            playlist.trackIds().forEach(trackId -> tracks.putRef(trackId, ref));
+            publish(new TrackIndex.Source(key, TrackIndex.Kind.PLAYLIST, fingerprintPrefix + playlist.snapshotId(), tracks));
+            if (logger.isInfoEnabled()) logger.info("Read " + playlist.trackIds().size() + " track id(s) from playlist " + playlist.name() + " by " + playlist.ownerName());
+            notifyOnChangeListeners(Change.INDEX);
         }
         catch (IOException | SpotifyWebApiException | ParseException e) {
             logger.error("Error reading playlists", e);
@@ -291,52 +585,140 @@ public abstract class Cfg<T> {
 
     // ===========================
 
-    private InputStream readContents(URI uri) {
+    /**
+     * @param fingerprint changes when the contents change
+     */
+    private record Contents(File file, String fingerprint) {}
+
+    /**
+     * The fingerprint of a moreTracks source includes the settings, so changing the columns in the configuration causes a re-read.
+     */
+    private static String fingerprint(Contents contents, TECL moreTrack) {
+        return contents.fingerprint() + "/" + moreTrack.integer("sheetIdx", 0) + "/" + moreTrack.integer("idIdx", 0) + "/" + moreTrack.integer("danceIdx", 1);
+    }
+
+    /**
+     * @return the file containing the contents, http sources are downloaded into the cache
+     */
+    private Contents readContents(URI uri) throws IOException {
         if (uri.toString().startsWith("http")) {
-            return readContentsHttp(uri);
+            HttpSourceCache.Entry entry = httpSourceCache().fetch(uri);
+            return new Contents(entry.file().toFile(), entry.fingerprint());
         }
-        if (uri.toString().startsWith("file")) {
-            return readContentsFile(uri);
+        File file = localFile(uri);
+        if (file == null) {
+            throw new IllegalArgumentException("Unknown URI type " + uri);
         }
-        if (uri.toString().startsWith("./")) {
-            try {
+        if (!file.exists()) {
+            throw new IllegalArgumentException("File does not exist: " + file.getAbsolutePath());
+        }
+        return new Contents(file, file.lastModified() + "/" + file.length());
+    }
+
+    /**
+     * @return the file for file and ./ URIs, null otherwise
+     */
+    private File localFile(URI uri) {
+        try {
+            if (uri.toString().startsWith("file")) {
+                return new File(uri.toURL().getFile());
+            }
+            if (uri.toString().startsWith("./")) {
                 File currentDirectory = new File(".");
                 uri = new URI("file:///" + currentDirectory.getAbsolutePath().replace("\\", "/") + "/" + uri);
-                return readContentsFile(uri);
-            }
-            catch (URISyntaxException e) {
-                throw new RuntimeException(e);
+                return new File(uri.toURL().getFile());
             }
+            return null;
+        }
+        catch (IOException | URISyntaxException e) {
+            throw new RuntimeException(e);
         }
-        throw new IllegalArgumentException("Unknown URI type " + uri);
     }
 
-    private ByteArrayInputStream readContentsHttp(URI uri) {
-        try (
-            HttpClient httpClient = HttpClient.newBuilder()
-                    .followRedirects(HttpClient.Redirect.ALWAYS)
-                    .build();
-        ) {
-            HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
-            HttpResponse<String> httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return new ByteArrayInputStream(httpResponse.body().getBytes());
-        }
-        catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
+    private synchronized HttpSourceCache httpSourceCache() {
+        if (httpSourceCache == null) {
+            httpSourceCache = new HttpSourceCache(cacheDirectory().resolve("http"));
         }
+        return httpSourceCache;
     }
 
-    private FileInputStream readContentsFile(URI uri) {
-        try {
-            File file = new File(uri.toURL().getFile());
-            if (!file.exists()) {
-                throw new IllegalArgumentException("File does not exist: " + file.getAbsolutePath());
+    /**
+     * The cache is shared with the overlays, and if persisted, written when the JVM stops.
+     */
+    public synchronized TrackMetadataCache trackMetadataCache() {
+        if (base != null) {
+            return base.trackMetadataCache();
+        }
+        if (trackMetadataCache == null) {
+            boolean persist = tecl.bool(CACHE + "/trackMetadata/persist", false);
+            trackMetadataCache = new TrackMetadataCache(
+                    tecl.integer(CACHE + "/trackMetadata/size", 10_000),
+                    Duration.ofHours(tecl.integer(CACHE + "/trackMetadata/ttlHours", 24 * 7)),
+                    persist ? cacheDirectory().resolve("trackMetadata.bin") : null);
+            if (persist) {
+                Runtime.getRuntime().addShutdownHook(new Thread(trackMetadataCache::save, "trackMetadataCache"));
             }
-            return new FileInputStream(file);
         }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+        return trackMetadataCache;
+    }
+
+    /**
+     * The cache is shared with the overlays.
+     */
+    public synchronized CoverArtCache coverArtCache() {
+        if (base != null) {
+            return base.coverArtCache();
         }
+        if (coverArtCache == null) {
+            coverArtCache = new CoverArtCache(cacheDirectory().resolve("coverArt"), tecl.integer(CACHE + "/coverArt/sizeMB", 200) * 1024L * 1024L);
+        }
+        return coverArtCache;
+    }
+
+    public boolean coverArtWarmUp() {
+        return tecl.bool(CACHE + "/coverArt/warmUp", false);
+    }
+
+    /**
+     * Download the cover art of all tracks in the configured playlists into the cover art cache, so it is there when a track is played.
+     * Playlists that were read already are taken from the index, the metadata is fetched with ingest priority.
+     * @return completes with the number of images that were downloaded
+     */
+    public CompletableFuture<Integer> warmUpCoverArt(Supplier<SpotifyApi> spotifyApiSupplier) {
+        return CompletableFuture.supplyAsync(() -> {
+            PlaylistLoader playlistLoader = new PlaylistLoader(spotifyApiSupplier.get(), pageExecutorService);
+            Set<String> trackIds = new HashSet<>();
+            tecl.grp(PLAYLISTS).rows().forEach(playlistTecl -> {
+                String playlistId = playlistTecl.str("id");
+                TrackIndex.Source source = trackIndex.source(PLAYLISTS + "/" + playlistId);
+                if (source != null) {
+                    source.tracks().forEach((trackId, dances) -> trackIds.add(trackId));
+                    return;
+                }
+                try {
+                    trackIds.addAll(playlistLoader.load(playlistId, null).trackIds());
+                }
+                catch (IOException | SpotifyWebApiException | ParseException e) {
+                    logger.warn("Reading playlist " + playlistId + " for the cover art failed: " + e.getMessage());
+                }
+            });
+
+            TrackMetadataLoader trackMetadataLoader = new TrackMetadataLoader(spotifyApiSupplier, trackMetadataCache(), SpotifyCallScheduler.Priority.INGEST);
+            List<CompletableFuture<TrackMetadata>> futures = trackIds.stream()
+                    .map(trackId -> trackMetadataLoader.get(trackId).exceptionally(t -> null))
+                    .toList();
+            List<String> coverArtUrls = futures.stream()
+                    .map(CompletableFuture::join)
+                    .filter(trackMetadata -> trackMetadata != null && trackMetadata.coverArtUrl() != null)
+                    .map(TrackMetadata::coverArtUrl)
+                    .toList();
+            if (logger.isInfoEnabled()) logger.info("Found " + coverArtUrls.size() + " cover art url(s) for the " + trackIds.size() + " track(s) in the playlists");
+            return coverArtUrls;
+        }, pageExecutorService).thenCompose(coverArtUrls -> coverArtCache().warmUp(coverArtUrls));
+    }
+
+    public Path cacheDirectory() {
+        return Path.of(tecl.str(CACHE + "/directory", System.getProperty("user.home") + "/.spotifyDanceInfo/cache"));
     }
 
     public String webapiClientId() {
@@ -386,17 +768,23 @@ public abstract class Cfg<T> {
     protected abstract String recall(String id);
 
     public List<String> trackIdToDanceIds(String trackId) {
-        String danceText = tecl.grp(TRACKS).str("id", trackId, "dance", "");
-        if (!danceText.isBlank()) {
-            return danceTextToDances(danceText);
-        }
+        // The index contains the tracks, moreTracks and playlists
+        List<String> dances = (base == null ? trackIndex.danceIds(trackId) : trackIndex.danceIds(trackId, base.trackIndex()));
+        return dances == null ? List.of("") : dances;
+    }
 
-        // also look in the moreTracks and playlists
-        List<String> dances = songIdToDanceNames.get(trackId);
-        if (dances == null) {
-            dances = songIdToDanceNamesPlaylists.get(trackId);
+    /**
+     * Add or replace a source in the index.
+     * Writers are serialized, readers always see a complete index.
+     */
+    protected void publish(TrackIndex.Source source) {
+        synchronized (trackIndexLock) {
+            trackIndex = trackIndex.with(source);
         }
-        return dances == null ? List.of("") : dances;
+    }
+
+    public TrackIndex trackIndex() {
+        return trackIndex;
     }
 
     public String danceIdToScreenText(String danceId) {
@@ -428,26 +816,64 @@ public abstract class Cfg<T> {
      * @return
      */
     public T onChange(Consumer<Cfg<?>> listener) {
+        return onChange((cfg, changes) -> listener.accept(cfg));
+    }
+
+    /**
+     * Changes that happen in a short time window are coalesced into a single call, which is passed what changed.
+     * @param listener
+     * @return
+     */
+    public T onChange(BiConsumer<Cfg<?>, Set<Change>> listener) {
         onChangeListeners.add(listener);
         return (T)this;
     }
 
-    private void runInBackground(Runnable runnable) {
+    /**
+     * Sources that (according to the current index, possibly from the snapshot) contain the track, are loaded first.
+     * This way the source holding the currently playing track is refreshed before all others.
+     * Call this once when the playing track changes, not on every lookup.
+     */
+    public void prioritizeSourcesOf(String trackId) {
+        if (base != null) {
+            base.prioritizeSourcesOf(trackId);
+        }
+        if (numberOfBackgroundTasksCounter.get() == 0) {
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        trackIndex.sources().forEach(source -> {
+            if (source.tracks().get(trackId) != null) {
+                keys.add(source.key());
+            }
+        });
+        if (!keys.isEmpty()) {
+            loaderGroup.reprioritize(keys::contains, LoaderScheduler.Priority.HIGH);
+        }
+    }
+
+    /**
+     * @param key the key of the source that is loaded
+     */
+    private void runInBackground(String key, Runnable runnable) {
         if (runInBackground) {
             numberOfBackgroundTasksCounter.incrementAndGet();
-            notifyOnChangeListeners();
-            executorService.submit(() -> {
+            notifyOnChangeListeners(Change.TASKS);
+            loaderGroup.submit(key, LoaderScheduler.Priority.NORMAL, () -> {
                 try {
                     runnable.run();
                 }
                 finally {
-                    numberOfBackgroundTasksCounter.decrementAndGet();
-                    notifyOnChangeListeners();
+                    if (numberOfBackgroundTasksCounter.decrementAndGet() == 0) {
+                        saveSnapshot();
+                    }
+                    notifyOnChangeListeners(Change.TASKS);
                 }
             });
         }
         else {
             runnable.run();
+            saveSnapshot();
         }
     }
 
@@ -455,7 +881,48 @@ public abstract class Cfg<T> {
         return numberOfBackgroundTasksCounter.get();
     }
 
-    private void notifyOnChangeListeners() {
-        onChangeListeners.forEach(l -> l.accept(Cfg.this));
+    private void notifyOnChangeListeners(Change change) {
+        if (!runInBackground) {
+            notifyOnChangeListeners(EnumSet.of(change));
+            return;
+        }
+
+        // Only the first change in a window schedules the notification, the others are added to it
+        synchronized (pendingChanges) {
+            boolean scheduled = !pendingChanges.isEmpty();
+            pendingChanges.add(change);
+            if (scheduled) {
+                return;
+            }
+        }
+        onChangeExecutorService.schedule(() -> {
+            Set<Change> changes;
+            synchronized (pendingChanges) {
+                changes = EnumSet.copyOf(pendingChanges);
+                pendingChanges.clear();
+            }
+            notifyOnChangeListeners(changes);
+        }, ON_CHANGE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void notifyOnChangeListeners(Set<Change> changes) {
+        // A change of the index of the base also changes the lookups through the overlays
+        if (changes.contains(Change.INDEX)) {
+            List<Cfg<?>> overlays;
+            synchronized (this.overlays) {
+                overlays = new ArrayList<>(this.overlays);
+            }
+            overlays.forEach(overlay -> overlay.notifyOnChangeListeners(Change.INDEX));
+        }
+
+        Set<Change> unmodifiableChanges = Collections.unmodifiableSet(changes);
+        onChangeListeners.forEach(l -> {
+            try {
+                l.accept(Cfg.this, unmodifiableChanges);
+            }
+            catch (RuntimeException e) {
+                logger.error("Change listener failed", e);
+            }
+        });
     }
 }
@@ -0,0 +1,251 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the cover art on disk, a dance evening plays the same albums over and over, and the venue's network is not always reliable.
+ * Spotify's image URLs never change contents (the path is a hash of the image), so a cached image is used without revalidating it.
+ * The cache has a size cap; the least recently used images are deleted when it is exceeded.
+ */
+public class CoverArtCache {
+    private static final Logger logger = LoggerFactory.getLogger(CoverArtCache.class);
+
+    private static final String SUFFIX = ".img";
+    private static final int WARM_UP_CONCURRENCY = 8;
+    private static final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<Path, Long> pathToSize = new LinkedHashMap<>(16, 0.75f, true); // access order, guarded by this
+    private long bytes = 0; // guarded by this
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public CoverArtCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        index();
+    }
+
+    public synchronized boolean contains(String url) {
+        return pathToSize.containsKey(path(url));
+    }
+
+    /**
+     * @return the image, from the cache or else downloaded; an image is only downloaded once at a time
+     */
+    public byte[] read(String url) throws IOException {
+        Path path = path(url);
+        byte[] contents = readCached(path);
+        if (contents != null) {
+            return contents;
+        }
+
+        // Join a download that is already underway
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlightFuture = inFlight.putIfAbsent(url, future);
+        if (inFlightFuture != null) {
+            return join(url, inFlightFuture);
+        }
+        try {
+            contents = download(url, path);
+            future.complete(contents);
+            return contents;
+        }
+        catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(url);
+        }
+    }
+
+    /**
+     * Download the images that are not in the cache yet, a number at a time.
+     * @return completes with the number of images that were downloaded
+     */
+    public CompletableFuture<Integer> warmUp(Collection<String> urls) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            Semaphore semaphore = new Semaphore(WARM_UP_CONCURRENCY);
+            AtomicInteger downloaded = new AtomicInteger(0);
+            List<CompletableFuture<Void>> futures = urls.stream()
+                    .distinct()
+                    .filter(url -> !contains(url))
+                    .map(url -> CompletableFuture.runAsync(() -> {
+                        semaphore.acquireUninterruptibly();
+                        try {
+                            read(url);
+                            downloaded.incrementAndGet();
+                        }
+                        catch (IOException e) {
+                            logger.warn("Downloading cover art failed " + url + ": " + e.getMessage());
+                        }
+                        finally {
+                            semaphore.release();
+                        }
+                    }, executorService))
+                    .toList();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            if (logger.isInfoEnabled()) logger.info("Downloaded " + downloaded.get() + " of " + urls.size() + " cover art image(s) in " + (System.currentTimeMillis() - start) + " ms");
+            return downloaded.get();
+        }, executorService);
+    }
+
+    private byte[] readCached(Path path) throws IOException {
+        synchronized (this) {
+            if (pathToSize.get(path) == null) { // get also marks it as recently used
+                return null;
+            }
+        }
+        try {
+            byte[] contents = Files.readAllBytes(path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis())); // so the order of use survives a restart
+            return contents;
+        }
+        catch (NoSuchFileException e) {
+            // Evicted in the meantime
+            synchronized (this) {
+                Long size = pathToSize.remove(path);
+                bytes -= (size == null ? 0 : size);
+            }
+            return null;
+        }
+    }
+
+    private byte[] download(String url, Path path) throws IOException {
+        try {
+            HttpResponse<byte[]> httpResponse = HttpSourceCache.httpClient().send(HttpRequest.newBuilder(URI.create(url)).GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (httpResponse.statusCode() != 200) {
+                throw new IOException("HTTP " + httpResponse.statusCode() + " for " + url);
+            }
+            byte[] contents = httpResponse.body();
+
+            // Write to a temporary file first, so a crash never leaves a partial image behind
+            Files.createDirectories(directory);
+            Path tmpPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmpPath, contents);
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(tmpPath);
+            }
+            if (logger.isDebugEnabled()) logger.debug("Downloaded " + url + ", " + contents.length + " bytes");
+
+            synchronized (this) {
+                Long previousSize = pathToSize.put(path, (long) contents.length);
+                bytes += contents.length - (previousSize == null ? 0 : previousSize);
+                evict();
+            }
+            return contents;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + url, e);
+        }
+    }
+
+    /**
+     * Delete the least recently used images, but always keep the image that was just added.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Path, Long>> iterator = pathToSize.entrySet().iterator();
+        while (bytes > maxBytes && pathToSize.size() > 1) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            bytes -= eldest.getValue();
+            iterator.remove();
+            try {
+                Files.deleteIfExists(eldest.getKey());
+            }
+            catch (IOException e) {
+                if (logger.isDebugEnabled()) logger.debug("Could not delete " + eldest.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * The files' last modified time is the last time they were used.
+     */
+    private synchronized void index() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (
+            Stream<Path> paths = Files.list(directory);
+        ) {
+            paths.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(CoverArtCache::lastModified))
+                    .forEach(path -> {
+                        try {
+                            long size = Files.size(path);
+                            pathToSize.put(path, size);
+                            bytes += size;
+                        }
+                        catch (IOException e) {
+                            if (logger.isDebugEnabled()) logger.debug("Skipping " + path, e);
+                        }
+                    });
+            evict();
+            if (logger.isInfoEnabled()) logger.info("Cover art cache " + directory + " holds " + pathToSize.size() + " image(s), " + bytes / 1024 / 1024 + " MB");
+        }
+        catch (IOException e) {
+            logger.warn("Indexing the cover art cache failed " + directory, e);
+        }
+    }
+
+    private Path path(String url) {
+        return directory.resolve(HttpSourceCache.sha256(url.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] join(String url, CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Downloading " + url + " failed", e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + url, e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a set of files, and reports the ones that changed.
+ * Applications often write a file in multiple steps, so changes are only reported after the files have been quiet for a while.
+ */
+public class FileWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FileWatcher.class);
+
+    private static final long QUIET_MS = 500;
+
+    private final WatchService watchService;
+    private final Consumer<Set<Path>> onChange;
+    private final Map<Path, WatchKey> directoryToWatchKey = new HashMap<>();
+    private volatile Set<Path> paths = Set.of();
+
+    /**
+     * @param onChange is called on the watcher's thread
+     */
+    public FileWatcher(Consumer<Set<Path>> onChange) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.onChange = onChange;
+        Thread.ofVirtual().name("fileWatcher").start(this::run);
+    }
+
+    /**
+     * Replace the files that are watched.
+     */
+    public synchronized void watch(Set<Path> paths) throws IOException {
+        Set<Path> absolutePaths = new HashSet<>();
+        paths.forEach(path -> absolutePaths.add(path.toAbsolutePath().normalize()));
+
+        // The WatchService watches directories
+        Set<Path> directories = new HashSet<>();
+        for (Path path : absolutePaths) {
+            Path directory = path.getParent();
+            directories.add(directory);
+            if (!directoryToWatchKey.containsKey(directory)) {
+                directoryToWatchKey.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        }
+        directoryToWatchKey.entrySet().removeIf(entry -> {
+            if (directories.contains(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().cancel();
+            return true;
+        });
+        this.paths = Set.copyOf(absolutePaths);
+        if (logger.isInfoEnabled()) logger.info("Watching " + this.paths);
+    }
+
+    private void run() {
+        Set<Path> changed = new HashSet<>();
+        try {
+            while (true) {
+                WatchKey watchKey = (changed.isEmpty() ? watchService.take() : watchService.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+
+                // Quiet, report the changes
+                if (watchKey == null) {
+                    if (logger.isInfoEnabled()) logger.info("Changed " + changed);
+                    try {
+                        onChange.accept(Set.copyOf(changed));
+                    }
+                    catch (RuntimeException e) {
+                        logger.error("Processing changed files failed", e);
+                    }
+                    changed.clear();
+                    continue;
+                }
+
+                Set<Path> paths = this.paths;
+                Path directory = (Path)watchKey.watchable();
+                for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+                    if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        changed.addAll(paths); // events were lost
+                        continue;
+                    }
+                    Path path = directory.resolve((Path)watchEvent.context());
+                    if (paths.contains(path)) {
+                        changed.add(path);
+                    }
+                }
+                watchKey.reset();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e) {
+            if (logger.isDebugEnabled()) logger.debug("File watcher stopped");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,199 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Downloads http sources into an on-disk cache, keyed by URI.
+ * A cached source is revalidated using ETag / Last-Modified, so an unchanged source costs a single 304 response.
+ * If the server cannot be reached, the cached copy is used.
+ */
+public class HttpSourceCache {
+    private static final Logger logger = LoggerFactory.getLogger(HttpSourceCache.class);
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.ALWAYS)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private static final Map<Path, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String URI_KEY = "uri";
+
+    private final Path directory;
+
+    /**
+     * @param file the cached contents
+     * @param fingerprint identifies the contents, this changes when the contents change
+     * @param modified true if the contents were (re)downloaded
+     */
+    public record Entry(Path file, String fingerprint, boolean modified) {}
+
+    public HttpSourceCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The one http client that is shared by everything that reads over http.
+     */
+    public static HttpClient httpClient() {
+        return httpClient;
+    }
+
+    public Entry fetch(URI uri) throws IOException {
+        Files.createDirectories(directory);
+        String key = sha256(uri.toString().getBytes(StandardCharsets.UTF_8));
+        Path propertiesPath = directory.resolve(key + ".properties");
+
+        // Only one thread per source can update the cache
+        ReentrantLock lock = locks.computeIfAbsent(propertiesPath, p -> new ReentrantLock());
+        lock.lock();
+        try {
+            Properties properties = new Properties();
+            if (Files.exists(propertiesPath)) {
+                try (
+                    InputStream inputStream = Files.newInputStream(propertiesPath);
+                ) {
+                    properties.load(inputStream);
+                }
+            }
+            Path bodyPath = properties.getProperty(FINGERPRINT) == null ? null : bodyPath(key, properties.getProperty(FINGERPRINT));
+            if (bodyPath != null && !Files.exists(bodyPath)) {
+                properties.clear();
+                bodyPath = null;
+            }
+
+            // Conditional GET
+            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri).GET();
+            if (properties.getProperty(ETAG) != null) {
+                requestBuilder.header("If-None-Match", properties.getProperty(ETAG));
+            }
+            if (properties.getProperty(LAST_MODIFIED) != null) {
+                requestBuilder.header("If-Modified-Since", properties.getProperty(LAST_MODIFIED));
+            }
+
+            // The body is streamed to a temporary file, and only replaces the cached copy when complete
+            Path tmpPath = Files.createTempFile(directory, key, ".tmp");
+            try {
+                HttpResponse<Path> httpResponse;
+                try {
+                    httpResponse = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofFile(tmpPath));
+                }
+                catch (IOException e) {
+                    return cachedOrThrow(uri, bodyPath, properties, e);
+                }
+
+                if (httpResponse.statusCode() == 304) {
+                    if (logger.isInfoEnabled()) logger.info("Not modified " + uri);
+                    return new Entry(bodyPath, properties.getProperty(FINGERPRINT), false);
+                }
+                if (httpResponse.statusCode() != 200) {
+                    return cachedOrThrow(uri, bodyPath, properties, new IOException("HTTP " + httpResponse.statusCode() + " for " + uri));
+                }
+
+                // The body file is named after its contents, so a file that is still being read is never overwritten
+                String previousFingerprint = properties.getProperty(FINGERPRINT);
+                String fingerprint = sha256(tmpPath);
+                Path newBodyPath = bodyPath(key, fingerprint);
+                if (!Files.exists(newBodyPath)) {
+                    Files.move(tmpPath, newBodyPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+                properties.clear();
+                properties.setProperty(URI_KEY, uri.toString());
+                properties.setProperty(FINGERPRINT, fingerprint);
+                httpResponse.headers().firstValue("ETag").ifPresent(v -> properties.setProperty(ETAG, v));
+                httpResponse.headers().firstValue("Last-Modified").ifPresent(v -> properties.setProperty(LAST_MODIFIED, v));
+                try (
+                    OutputStream outputStream = Files.newOutputStream(propertiesPath);
+                ) {
+                    properties.store(outputStream, null);
+                }
+                if (bodyPath != null && !bodyPath.equals(newBodyPath)) {
+                    deleteQuietly(bodyPath);
+                }
+                return new Entry(newBodyPath, fingerprint, !fingerprint.equals(previousFingerprint));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + uri, e);
+            }
+            finally {
+                Files.deleteIfExists(tmpPath);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private Path bodyPath(String key, String fingerprint) {
+        return directory.resolve(key + "-" + fingerprint.substring(0, 16) + ".body");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            // On some platforms a file cannot be deleted while it is still open, then it is left behind
+            if (logger.isDebugEnabled()) logger.debug("Could not delete " + path, e);
+        }
+    }
+
+    private Entry cachedOrThrow(URI uri, Path bodyPath, Properties properties, IOException e) throws IOException {
+        if (bodyPath == null) {
+            throw e;
+        }
+        logger.warn("Using cached copy of " + uri + ": " + e.getMessage());
+        return new Entry(bodyPath, properties.getProperty(FINGERPRINT), false);
+    }
+
+    static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(messageDigest().digest(bytes));
+    }
+
+    static String sha256(Path path) throws IOException {
+        MessageDigest messageDigest = messageDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (
+            InputStream inputStream = Files.newInputStream(path);
+        ) {
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                messageDigest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    private static MessageDigest messageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
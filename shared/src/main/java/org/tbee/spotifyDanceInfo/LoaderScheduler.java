@@ -0,0 +1,119 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Runs the loading of sources on virtual threads, within a global limit and a limit per group (a Cfg, so a session in the web app).
+ * Waiting tasks are started in order of priority, then the most recently created group first (the session that just connected), then in order of submission.
+ */
+public class LoaderScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(LoaderScheduler.class);
+
+    private static final LoaderScheduler instance = new LoaderScheduler(Math.max(4, Runtime.getRuntime().availableProcessors()), 4);
+
+    public enum Priority {HIGH, NORMAL}
+
+    private final int globalLimit;
+    private final int groupLimit;
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final PriorityQueue<Task> waiting = new PriorityQueue<>(Comparator
+            .comparing(Task::priority)
+            .thenComparingLong(task -> -task.group().sequence)
+            .thenComparingLong(Task::sequence));
+    private int running = 0;
+
+    public LoaderScheduler(int globalLimit, int groupLimit) {
+        this.globalLimit = globalLimit;
+        this.groupLimit = groupLimit;
+    }
+
+    /**
+     * The scheduler that is shared by all Cfgs in the JVM.
+     */
+    public static LoaderScheduler instance() {
+        return instance;
+    }
+
+    public Group group() {
+        return new Group(sequence.incrementAndGet());
+    }
+
+    private synchronized void dispatch() {
+        // Start the waiting tasks in order, skipping those whose group is at its limit
+        List<Task> skipped = new ArrayList<>();
+        while (running < globalLimit && !waiting.isEmpty()) {
+            Task task = waiting.poll();
+            if (task.group().running >= groupLimit) {
+                skipped.add(task);
+                continue;
+            }
+            running++;
+            task.group().running++;
+            Thread.ofVirtual().name("loader-" + task.key()).start(() -> run(task));
+        }
+        waiting.addAll(skipped);
+    }
+
+    private void run(Task task) {
+        try {
+            task.runnable().run();
+        }
+        catch (RuntimeException e) {
+            logger.error("Loading " + task.key() + " failed", e);
+        }
+        finally {
+            synchronized (this) {
+                running--;
+                task.group().running--;
+            }
+            dispatch();
+        }
+    }
+
+    public class Group {
+        private final long sequence;
+        private int running = 0; // guarded by the scheduler
+
+        private Group(long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * @param key identifies what is loaded, so the task can be reprioritized
+         */
+        public void submit(String key, Priority priority, Runnable runnable) {
+            synchronized (LoaderScheduler.this) {
+                waiting.add(new Task(this, key, priority, LoaderScheduler.this.sequence.incrementAndGet(), runnable));
+            }
+            dispatch();
+        }
+
+        /**
+         * Change the priority of the tasks of this group that have not started yet.
+         */
+        public void reprioritize(Predicate<String> keyPredicate, Priority priority) {
+            synchronized (LoaderScheduler.this) {
+                List<Task> changed = new ArrayList<>();
+                for (Iterator<Task> iterator = waiting.iterator(); iterator.hasNext(); ) {
+                    Task task = iterator.next();
+                    if (task.group() == this && task.priority() != priority && keyPredicate.test(task.key())) {
+                        iterator.remove();
+                        changed.add(new Task(this, task.key(), priority, task.sequence(), task.runnable()));
+                    }
+                }
+                waiting.addAll(changed);
+            }
+        }
+    }
+
+    private record Task(Group group, String key, Priority priority, long sequence, Runnable runnable) {}
+}
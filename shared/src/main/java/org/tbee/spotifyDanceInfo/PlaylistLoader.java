@@ -0,0 +1,182 @@
+package org.tbee.spotifyDanceInfo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.specification.Playlist;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads the track ids of a playlist.
+ * The first call only fetches the playlist's metadata: if the snapshot id did not change, the playlist is not paged at all.
+ * Otherwise the total number of tracks is known, and the pages are fetched concurrently.
+ * A page only contains the fields that are used, and is parsed by streaming over the JSON instead of binding it to model objects.
+ * The requests go through the SpotifyCallScheduler with ingest priority, so loading never starves the live display.
+ * The scheduler limits the request rate, not the number of requests in flight, so all loaders share a limited number of permits for the pages.
+ */
+public class PlaylistLoader {
+    private static final Logger logger = LoggerFactory.getLogger(PlaylistLoader.class);
+
+    static final int PAGE_SIZE = 100; // the maximum Spotify allows
+    private static final String PLAYLIST_FIELDS = "name,snapshot_id,owner(display_name),tracks(total)";
+    private static final String PAGE_FIELDS = "items(track(id,name))";
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+    private static final Semaphore permits = new Semaphore(MAX_CONCURRENT_REQUESTS);
+
+    private final SpotifyApi spotifyApi;
+    private final ExecutorService executorService;
+
+    /**
+     * @param trackIds in playlist order, tracks without an id (like local files) are left out
+     */
+    public record Result(String id, String name, String ownerName, String snapshotId, List<String> trackIds) {}
+
+    public PlaylistLoader(SpotifyApi spotifyApi, ExecutorService executorService) {
+        this.spotifyApi = spotifyApi;
+        this.executorService = executorService;
+    }
+
+    /**
+     * @param knownSnapshotId the snapshot id of the previously read version of the playlist, may be null
+     * @return null if the playlist still has the known snapshot id
+     */
+    public Result load(String playlistId, String knownSnapshotId) throws IOException, SpotifyWebApiException, ParseException {
+        // Only the metadata, the total tells which pages there are
+        Playlist playlist = call(() -> spotifyApi.getPlaylist(playlistId)
+                .fields(PLAYLIST_FIELDS)
+                .build().execute());
+        if (knownSnapshotId != null && knownSnapshotId.equals(playlist.getSnapshotId())) {
+            return null;
+        }
+        int total = playlist.getTracks().getTotal();
+
+        // Fetch the pages concurrently
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int offset = 0; offset < total; offset += PAGE_SIZE) {
+            int pageOffset = offset;
+            futures.add(executorService.submit(() -> {
+                String json;
+                permits.acquire();
+                try {
+                    json = call(() -> spotifyApi.getPlaylistsItems(playlistId)
+                            .fields(PAGE_FIELDS)
+                            .limit(PAGE_SIZE)
+                            .offset(pageOffset)
+                            .build().getJson());
+                }
+                finally {
+                    permits.release();
+                }
+                return parseTrackIds(json, playlist.getName());
+            }));
+        }
+
+        // Merge the pages in order
+        List<String> trackIds = new ArrayList<>(total);
+        for (Future<List<String>> future : futures) {
+            trackIds.addAll(get(future));
+        }
+        return new Result(playlistId, playlist.getName(), playlist.getOwner().getDisplayName(), playlist.getSnapshotId(), trackIds);
+    }
+
+    /**
+     * Parse the track ids from a page of playlist items.
+     * Items without a track or id (like local files) are skipped.
+     */
+    static List<String> parseTrackIds(String json, String playlistName) throws IOException {
+        List<String> trackIds = new ArrayList<>(PAGE_SIZE);
+        try (
+            JsonReader jsonReader = new JsonReader(new StringReader(json));
+        ) {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                if (!"items".equals(jsonReader.nextName())) {
+                    jsonReader.skipValue();
+                    continue;
+                }
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    jsonReader.beginObject();
+                    while (jsonReader.hasNext()) {
+                        if (!"track".equals(jsonReader.nextName()) || jsonReader.peek() == JsonToken.NULL) {
+                            jsonReader.skipValue();
+                            continue;
+                        }
+                        parseTrack(jsonReader, playlistName, trackIds);
+                    }
+                    jsonReader.endObject();
+                }
+                jsonReader.endArray();
+            }
+            jsonReader.endObject();
+        }
+        catch (IllegalStateException e) {
+            throw new IOException("Unexpected playlist items from " + playlistName, e);
+        }
+        return trackIds;
+    }
+
+    private static void parseTrack(JsonReader jsonReader, String playlistName, List<String> trackIds) throws IOException {
+        String id = null;
+        String name = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String fieldName = jsonReader.nextName();
+            if (jsonReader.peek() == JsonToken.NULL) {
+                jsonReader.nextNull();
+            }
+            else if ("id".equals(fieldName)) {
+                id = jsonReader.nextString();
+            }
+            else if ("name".equals(fieldName)) {
+                name = jsonReader.nextString();
+            }
+            else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        if (id != null) {
+            if (logger.isDebugEnabled()) logger.debug("Read from playlist " + playlistName + ": " + name);
+            trackIds.add(id);
+        }
+    }
+
+    private static <R> R get(Future<R> future) throws IOException, SpotifyWebApiException, ParseException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading playlist", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof SpotifyWebApiException spotifyWebApiException) {
+                throw spotifyWebApiException;
+            }
+            if (e.getCause() instanceof ParseException parseException) {
+                throw parseException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private <R> R call(SpotifyCallScheduler.SpotifyCall<R> spotifyCall) throws IOException, SpotifyWebApiException, ParseException {
+        return SpotifyCallScheduler.instance().call(spotifyApi.getClientId(), SpotifyCallScheduler.Priority.INGEST, spotifyCall);
+    }
+}
@@ -0,0 +1,262 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
+import se.michaelthelin.spotify.exceptions.detailed.InternalServerErrorException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * All calls to the Spotify webapi go through here.
+ * Spotify's rate limit applies to the app, so all users of the same client id share a token bucket.
+ * Calls for the live display have priority: ingest calls leave a reserve of tokens, and wait while live calls are waiting.
+ * A 429 pauses all calls of the client id for the Retry-After period, overloaded responses are retried with a backoff.
+ * When Spotify keeps failing, the circuit opens and calls fail immediately, until a trial call succeeds.
+ */
+public class SpotifyCallScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(SpotifyCallScheduler.class);
+
+    private static final SpotifyCallScheduler instance = new SpotifyCallScheduler();
+
+    private static final int BUCKET_CAPACITY = 20;
+    private static final double TOKENS_PER_SECOND = 10;
+    private static final int LIVE_RESERVE = 5; // tokens that ingest leaves for the live display
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_MS = 500;
+    private static final int FAILURE_THRESHOLD = 5; // consecutive failures that open the circuit
+    private static final long OPEN_MS = 30_000;
+
+    public enum Priority {LIVE, INGEST}
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+    private final long openMs;
+
+    private SpotifyCallScheduler() {
+        this(OPEN_MS);
+    }
+
+    /**
+     * @param openMs how long the circuit stays open
+     */
+    SpotifyCallScheduler(long openMs) {
+        this.openMs = openMs;
+    }
+
+    /**
+     * The scheduler that is shared by everything in the JVM.
+     */
+    public static SpotifyCallScheduler instance() {
+        return instance;
+    }
+
+    /**
+     * Execute the call within the limits of the client id, retrying when Spotify is overloaded.
+     */
+    public <R> R call(String clientId, Priority priority, SpotifyCall<R> spotifyCall) throws IOException, SpotifyWebApiException, ParseException {
+        Client client = clients.computeIfAbsent(clientId == null ? "" : clientId, k -> new Client());
+        for (int attempt = 1; ; attempt++) {
+            client.acquire(priority);
+            try {
+                R result = spotifyCall.execute();
+                client.succeeded();
+                return result;
+            }
+            catch (TooManyRequestsException e) {
+                // Spotify is fine, the app asks too much: all calls of the client id pause
+                client.succeeded();
+                long delayMs = Math.max(e.getRetryAfter() * 1000L, backoffMs(attempt));
+                client.pause(delayMs);
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("Spotify rate limit reached, pausing " + delayMs + " ms");
+            }
+            catch (ServiceUnavailableException | BadGatewayException | InternalServerErrorException e) {
+                client.failed();
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                long delayMs = backoffMs(attempt);
+                client.pause(delayMs);
+                logger.warn("Spotify unavailable, retrying in " + delayMs + " ms: " + e.getMessage());
+            }
+            catch (IOException e) {
+                client.failed();
+                throw e;
+            }
+            catch (SpotifyWebApiException | ParseException | RuntimeException e) {
+                client.succeeded(); // Spotify answered
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Like call, but on a virtual thread.
+     * Exceptions complete the future exceptionally, wrapped in a CompletionException like executeAsync does.
+     */
+    public <R> CompletableFuture<R> callAsync(String clientId, Priority priority, SpotifyCall<R> spotifyCall) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call(clientId, priority, spotifyCall);
+            }
+            catch (IOException | SpotifyWebApiException | ParseException e) {
+                throw new CompletionException(e);
+            }
+        }, executorService);
+    }
+
+    private static long backoffMs(int attempt) {
+        // Exponential with jitter, so retries do not arrive at the same time
+        long backoffMs = BACKOFF_MS << (attempt - 1);
+        return backoffMs + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+    }
+
+    public interface SpotifyCall<R> {
+        R execute() throws IOException, SpotifyWebApiException, ParseException;
+    }
+
+    /**
+     * The state per client id.
+     * Callers wait on a lock instead of a monitor, so a waiting virtual thread does not pin its carrier thread.
+     */
+    private class Client {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private double tokens = BUCKET_CAPACITY;
+        private long refilledAt = System.nanoTime();
+        private long pausedUntil = 0;
+        private int liveWaiting = 0;
+        private int consecutiveFailures = 0;
+        private long openUntil = 0; // 0 means the circuit is closed
+        private boolean trialInProgress = false;
+
+        void acquire(Priority priority) throws IOException {
+            lock.lock();
+            try {
+                acquireLocked(priority);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private void acquireLocked(Priority priority) throws IOException {
+            if (priority == Priority.LIVE) {
+                liveWaiting++;
+            }
+            boolean trial = false; // this caller makes the trial call, so it may wait for a token while the circuit is half open
+            boolean acquired = false;
+            try {
+                while (true) {
+                    if (!trial) {
+                        trial = checkCircuit();
+                    }
+                    long waitMs = pausedUntil - System.currentTimeMillis();
+                    if (waitMs <= 0) {
+                        refill();
+                        double needed = (priority == Priority.LIVE ? 1 : 1 + LIVE_RESERVE);
+                        if (tokens >= needed && (priority == Priority.LIVE || liveWaiting == 0)) {
+                            tokens--;
+                            acquired = true;
+                            return;
+                        }
+                        waitMs = Math.max(1, (long)Math.ceil((needed - tokens) * 1000 / TOKENS_PER_SECOND));
+                    }
+                    changed.awaitNanos(TimeUnit.MILLISECONDS.toNanos(waitMs));
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for Spotify", e);
+            }
+            finally {
+                if (trial && !acquired) {
+                    trialInProgress = false; // without a call there is no outcome, so let another caller make the trial
+                }
+                if (priority == Priority.LIVE) {
+                    liveWaiting--;
+                    changed.signalAll(); // ingest may continue
+                }
+            }
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(BUCKET_CAPACITY, tokens + (now - refilledAt) / 1_000_000_000.0 * TOKENS_PER_SECOND);
+            refilledAt = now;
+        }
+
+        /**
+         * An open circuit lets one trial call through after the open period.
+         * @return true if the caller makes the trial call
+         */
+        private boolean checkCircuit() throws IOException {
+            if (openUntil == 0) {
+                return false;
+            }
+            long remainingMs = openUntil - System.currentTimeMillis();
+            if (trialInProgress || remainingMs > 0) {
+                throw new IOException("Spotify is not available, calls are suspended for another " + Math.max(0, remainingMs) + " ms");
+            }
+            trialInProgress = true;
+            return true;
+        }
+
+        void pause(long delayMs) {
+            lock.lock();
+            try {
+                pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + delayMs);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void succeeded() {
+            lock.lock();
+            try {
+                if (openUntil != 0) {
+                    if (logger.isInfoEnabled()) logger.info("Spotify is available again");
+                }
+                consecutiveFailures = 0;
+                openUntil = 0;
+                trialInProgress = false;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void failed() {
+            lock.lock();
+            try {
+                consecutiveFailures++;
+                if (trialInProgress || consecutiveFailures >= FAILURE_THRESHOLD) {
+                    openUntil = System.currentTimeMillis() + openMs;
+                    trialInProgress = false;
+                    logger.warn("Spotify failed " + consecutiveFailures + " time(s) in a row, suspending calls for " + openMs + " ms");
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package org.tbee.spotifyDanceInfo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A compact map of track id to dances.
+ *
+ * Spotify track ids are 22 character base62 encodings of a 128 bit number, so they are stored as two longs in an open addressing table.
+ * Dance combinations are interned, so each track only holds an int referring to its combination.
+ * Ids that are not Spotify ids (tests, hand edited files) are kept in a regular map.
+ *
+ * A store is filled by a single thread and then frozen, after that it may be read concurrently.
+ */
+public final class TrackDanceStore {
+
+    static final int ID_LENGTH = 22;
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final byte[] BASE62_DIGITS = new byte[128];
+    private static final BigInteger TWO_POW_64 = BigInteger.ONE.shiftLeft(64);
+    private static final byte[] MAX_ID_DIGITS; // 2^128 - 1 in base62, ids above that do not fit in two longs
+    static {
+        Arrays.fill(BASE62_DIGITS, (byte)-1);
+        for (int i = 0; i < BASE62.length(); i++) {
+            BASE62_DIGITS[BASE62.charAt(i)] = (byte)i;
+        }
+        String maxId = toBase62(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE));
+        MAX_ID_DIGITS = new byte[ID_LENGTH];
+        for (int i = 0; i < ID_LENGTH; i++) {
+            MAX_ID_DIGITS[i] = BASE62_DIGITS[maxId.charAt(i)];
+        }
+    }
+
+    // A ref of 0 marks an empty slot, otherwise it is the index of the dance combination + 1
+    private long[] his;
+    private long[] los;
+    private int[] refs;
+    private int size = 0;
+    private final Map<String, Integer> otherIdToRef = new HashMap<>();
+    private final List<List<String>> danceCombinations = new ArrayList<>();
+    private final Map<List<String>, Integer> danceCombinationToRef = new HashMap<>();
+    private boolean frozen = false;
+
+    /**
+     * A track id that is decoded once, so it can be looked up in multiple stores without decoding it again.
+     * @param otherId the id if it is not a spotify id, otherwise null
+     */
+    record Key(long hi, long lo, String otherId) {}
+
+    public TrackDanceStore() {
+        this(16);
+    }
+
+    public TrackDanceStore(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        his = new long[capacity];
+        los = new long[capacity];
+        refs = new int[capacity];
+    }
+
+    private TrackDanceStore(long[] his, long[] los, int[] refs, int size) {
+        this.his = his;
+        this.los = los;
+        this.refs = refs;
+        this.size = size;
+    }
+
+    // ===========================
+    // ids
+
+    /**
+     * @return true if the id is a 22 character base62 string that fits into two longs
+     */
+    static boolean isSpotifyId(String id) {
+        if (id.length() != ID_LENGTH) {
+            return false;
+        }
+        boolean belowMax = false;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int digit = digit(id.charAt(i));
+            if (digit < 0) {
+                return false;
+            }
+            if (!belowMax) {
+                if (digit > MAX_ID_DIGITS[i]) {
+                    return false;
+                }
+                belowMax = digit < MAX_ID_DIGITS[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the bytes at the offset are a 22 character base62 string that fits into two longs
+     */
+    static boolean isSpotifyId(ByteBuffer bytes, int offset, int length) {
+        if (length != ID_LENGTH) {
+            return false;
+        }
+        boolean belowMax = false;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int digit = digit(bytes.get(offset + i));
+            if (digit < 0) {
+                return false;
+            }
+            if (!belowMax) {
+                if (digit > MAX_ID_DIGITS[i]) {
+                    return false;
+                }
+                belowMax = digit < MAX_ID_DIGITS[i];
+            }
+        }
+        return true;
+    }
+
+    static int digit(int c) {
+        return c >= 0 && c < 128 ? BASE62_DIGITS[c] : -1;
+    }
+
+    /**
+     * The upper 64 bits of the id, the id must be a valid spotify id
+     */
+    static long hi(String id) {
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            long digit = digit(id.charAt(i));
+            long carry = Math.unsignedMultiplyHigh(lo, 62);
+            hi = hi * 62 + carry;
+            lo = lo * 62;
+            long sum = lo + digit;
+            if (Long.compareUnsigned(sum, lo) < 0) {
+                hi++;
+            }
+            lo = sum;
+        }
+        return hi;
+    }
+
+    /**
+     * The lower 64 bits of the id, the id must be a valid spotify id
+     */
+    static long lo(String id) {
+        long lo = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            lo = lo * 62 + digit(id.charAt(i));
+        }
+        return lo;
+    }
+
+    /**
+     * Validate and decode the id, the hi and lo are decoded in one pass.
+     */
+    static Key key(String trackId) {
+        if (!isSpotifyId(trackId)) {
+            return new Key(0, 0, trackId);
+        }
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            long digit = digit(trackId.charAt(i));
+            long carry = Math.unsignedMultiplyHigh(lo, 62);
+            hi = hi * 62 + carry;
+            lo = lo * 62;
+            long sum = lo + digit;
+            if (Long.compareUnsigned(sum, lo) < 0) {
+                hi++;
+            }
+            lo = sum;
+        }
+        return new Key(hi, lo, null);
+    }
+
+    static long hi(ByteBuffer bytes, int offset) {
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            long digit = digit(bytes.get(offset + i));
+            long carry = Math.unsignedMultiplyHigh(lo, 62);
+            hi = hi * 62 + carry;
+            lo = lo * 62;
+            long sum = lo + digit;
+            if (Long.compareUnsigned(sum, lo) < 0) {
+                hi++;
+            }
+            lo = sum;
+        }
+        return hi;
+    }
+
+    static long lo(ByteBuffer bytes, int offset) {
+        long lo = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            lo = lo * 62 + digit(bytes.get(offset + i));
+        }
+        return lo;
+    }
+
+    static String id(long hi, long lo) {
+        BigInteger value = new BigInteger(Long.toUnsignedString(hi)).multiply(TWO_POW_64).add(new BigInteger(Long.toUnsignedString(lo)));
+        return toBase62(value);
+    }
+
+    private static String toBase62(BigInteger value) {
+        char[] chars = new char[ID_LENGTH];
+        BigInteger base = BigInteger.valueOf(62);
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            BigInteger[] quotientAndRemainder = value.divideAndRemainder(base);
+            chars[i] = BASE62.charAt(quotientAndRemainder[1].intValue());
+            value = quotientAndRemainder[0];
+        }
+        return new String(chars);
+    }
+
+    // ===========================
+    // dance combinations
+
+    int danceCombinationRef(List<String> dances) {
+        Integer ref = danceCombinationToRef.get(dances);
+        if (ref == null) {
+            dances = List.copyOf(dances);
+            danceCombinations.add(dances);
+            ref = danceCombinations.size();
+            danceCombinationToRef.put(dances, ref);
+        }
+        return ref;
+    }
+
+    List<String> danceCombination(int ref) {
+        return danceCombinations.get(ref - 1);
+    }
+
+    public int numberOfDanceCombinations() {
+        return danceCombinations.size();
+    }
+
+    // ===========================
+    // get & put
+
+    public List<String> get(String trackId) {
+        return get(key(trackId));
+    }
+
+    List<String> get(Key key) {
+        int ref = ref(key);
+        return ref == 0 ? null : danceCombination(ref);
+    }
+
+    int ref(String trackId) {
+        return ref(key(trackId));
+    }
+
+    int ref(Key key) {
+        if (key.otherId() != null) {
+            Integer ref = otherIdToRef.get(key.otherId());
+            return ref == null ? 0 : ref;
+        }
+        return ref(key.hi(), key.lo());
+    }
+
+    int ref(long hi, long lo) {
+        int mask = refs.length - 1;
+        for (int slot = slot(hi, lo, mask); refs[slot] != 0; slot = (slot + 1) & mask) {
+            if (his[slot] == hi && los[slot] == lo) {
+                return refs[slot];
+            }
+        }
+        return 0;
+    }
+
+    public void put(String trackId, List<String> dances) {
+        checkNotFrozen();
+        putRef(trackId, danceCombinationRef(dances));
+    }
+
+    void putRef(String trackId, int ref) {
+        checkNotFrozen();
+        Key key = key(trackId);
+        if (key.otherId() != null) {
+            otherIdToRef.put(trackId, ref);
+            return;
+        }
+        putRef(key.hi(), key.lo(), ref);
+    }
+
+    public void put(long hi, long lo, List<String> dances) {
+        checkNotFrozen();
+        putRef(hi, lo, danceCombinationRef(dances));
+    }
+
+    void putRef(long hi, long lo, int ref) {
+        checkNotFrozen();
+        if ((size + 1) * 2 > refs.length) {
+            grow();
+        }
+        int mask = refs.length - 1;
+        int slot = slot(hi, lo, mask);
+        while (refs[slot] != 0) {
+            if (his[slot] == hi && los[slot] == lo) {
+                refs[slot] = ref;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        his[slot] = hi;
+        los[slot] = lo;
+        refs[slot] = ref;
+        size++;
+    }
+
+    private static int slot(long hi, long lo, int mask) {
+        long hash = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldHis = his;
+        long[] oldLos = los;
+        int[] oldRefs = refs;
+        his = new long[oldRefs.length * 2];
+        los = new long[oldRefs.length * 2];
+        refs = new int[oldRefs.length * 2];
+        size = 0;
+        for (int i = 0; i < oldRefs.length; i++) {
+            if (oldRefs[i] != 0) {
+                putRef(oldHis[i], oldLos[i], oldRefs[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size + otherIdToRef.size();
+    }
+
+    /**
+     * Copy all tracks of the other store into this one, overwriting existing tracks.
+     */
+    public void putAll(TrackDanceStore other) {
+        mergeAll(other, false);
+    }
+
+    /**
+     * Copy all tracks of the other store into this one, tracks that already exist get the union of both dance combinations.
+     */
+    public void unionAll(TrackDanceStore other) {
+        mergeAll(other, true);
+    }
+
+    private void mergeAll(TrackDanceStore other, boolean union) {
+        checkNotFrozen();
+        // Dance combinations are translated once, not per track
+        int[] otherRefToRef = new int[other.danceCombinations.size() + 1];
+        for (int otherRef = 1; otherRef < otherRefToRef.length; otherRef++) {
+            otherRefToRef[otherRef] = danceCombinationRef(other.danceCombination(otherRef));
+        }
+
+        for (int i = 0; i < other.refs.length; i++) {
+            if (other.refs[i] != 0) {
+                long hi = other.his[i];
+                long lo = other.los[i];
+                int ref = otherRefToRef[other.refs[i]];
+                putRef(hi, lo, union ? unionRef(ref(hi, lo), ref) : ref);
+            }
+        }
+        other.otherIdToRef.forEach((trackId, otherRef) -> {
+            int ref = otherRefToRef[otherRef];
+            Integer existingRef = otherIdToRef.get(trackId);
+            otherIdToRef.put(trackId, union && existingRef != null ? unionRef(existingRef, ref) : ref);
+        });
+    }
+
+    private int unionRef(int existingRef, int ref) {
+        if (existingRef == 0 || existingRef == ref) {
+            return ref;
+        }
+        List<String> dances = new ArrayList<>(danceCombination(existingRef));
+        danceCombination(ref).forEach(dance -> {
+            if (!dances.contains(dance)) {
+                dances.add(dance);
+            }
+        });
+        return danceCombinationRef(dances);
+    }
+
+    /**
+     * Iterate over all tracks, this decodes the ids and is not intended for lookups.
+     */
+    public void forEach(BiConsumer<String, List<String>> consumer) {
+        for (int i = 0; i < refs.length; i++) {
+            if (refs[i] != 0) {
+                consumer.accept(id(his[i], los[i]), danceCombination(refs[i]));
+            }
+        }
+        otherIdToRef.forEach((trackId, ref) -> consumer.accept(trackId, danceCombination(ref)));
+    }
+
+    // ===========================
+    // persistence
+
+    /**
+     * The table is written as is, so reading it back does not require rehashing.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(refs.length);
+        out.writeInt(size);
+        out.writeInt(danceCombinations.size());
+        for (List<String> danceCombination : danceCombinations) {
+            out.writeInt(danceCombination.size());
+            for (String dance : danceCombination) {
+                TrackIndexSnapshot.writeString(out, dance);
+            }
+        }
+        for (long hi : his) {
+            out.writeLong(hi);
+        }
+        for (long lo : los) {
+            out.writeLong(lo);
+        }
+        for (int ref : refs) {
+            out.writeInt(ref);
+        }
+        out.writeInt(otherIdToRef.size());
+        for (Map.Entry<String, Integer> entry : otherIdToRef.entrySet()) {
+            TrackIndexSnapshot.writeString(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    static TrackDanceStore read(ByteBuffer in) {
+        int capacity = in.getInt();
+        int size = in.getInt();
+        List<List<String>> danceCombinations = new ArrayList<>();
+        int numberOfDanceCombinations = in.getInt();
+        for (int i = 0; i < numberOfDanceCombinations; i++) {
+            String[] dances = new String[in.getInt()];
+            for (int j = 0; j < dances.length; j++) {
+                dances[j] = TrackIndexSnapshot.readString(in);
+            }
+            danceCombinations.add(List.of(dances));
+        }
+
+        // Bulk copy the table
+        long[] his = new long[capacity];
+        in.asLongBuffer().get(his);
+        in.position(in.position() + capacity * Long.BYTES);
+        long[] los = new long[capacity];
+        in.asLongBuffer().get(los);
+        in.position(in.position() + capacity * Long.BYTES);
+        int[] refs = new int[capacity];
+        in.asIntBuffer().get(refs);
+        in.position(in.position() + capacity * Integer.BYTES);
+
+        TrackDanceStore trackDanceStore = new TrackDanceStore(his, los, refs, size);
+        danceCombinations.forEach(trackDanceStore::danceCombinationRef);
+        int numberOfOtherIds = in.getInt();
+        for (int i = 0; i < numberOfOtherIds; i++) {
+            trackDanceStore.otherIdToRef.put(TrackIndexSnapshot.readString(in), in.getInt());
+        }
+        return trackDanceStore;
+    }
+
+    // ===========================
+
+    public TrackDanceStore freeze() {
+        frozen = true;
+        return this;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The store is frozen");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.tbee.spotifyDanceInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of track id to dance ids, compiled from all the sources (config tracks, moreTracks and playlists).
+ * Changing a source produces a new index (copy-on-write), so readers never have to lock.
+ * The sources of each kind are compiled into a layer, only the layer of the changed source is compiled again, the other layers are shared with the previous index.
+ * The layers are then merged into one store in order of precedence, so a lookup is a single probe.
+ */
+public final class TrackIndex {
+
+    /**
+     * The kind of source determines the precedence: config tracks win over moreTracks, which win over playlists.
+     * Each kind is a layer in the index.
+     */
+    public enum Kind {CONFIG, MORE_TRACKS, PLAYLIST}
+
+    /**
+     * @param fingerprint identifies the version of the source that was read, sources without a fingerprint are not persisted
+     * @param tracks is frozen when the source is added to the index
+     */
+    public record Source(String key, Kind kind, String fingerprint, TrackDanceStore tracks) {
+        public Source(String key, Kind kind, TrackDanceStore tracks) {
+            this(key, kind, null, tracks);
+        }
+    }
+
+    static final TrackIndex EMPTY = new TrackIndex(new LinkedHashMap<>(), null, EnumSet.allOf(Kind.class));
+
+    private final Map<String, Source> sources;
+    private final TrackDanceStore config;
+    private final TrackDanceStore moreTracks;
+    private final TrackDanceStore playlists;
+    private final TrackDanceStore merged;
+
+    private TrackIndex(LinkedHashMap<String, Source> sources, TrackIndex previous, Set<Kind> changedKinds) {
+        this.sources = Collections.unmodifiableMap(sources);
+        this.config = (changedKinds.contains(Kind.CONFIG) ? compile(sources.values(), Kind.CONFIG) : previous.config);
+        this.moreTracks = (changedKinds.contains(Kind.MORE_TRACKS) ? compile(sources.values(), Kind.MORE_TRACKS) : previous.moreTracks);
+        this.playlists = (changedKinds.contains(Kind.PLAYLIST) ? compile(sources.values(), Kind.PLAYLIST) : previous.playlists);
+        this.merged = (changedKinds.isEmpty() ? previous.merged : merge(config, moreTracks, playlists));
+    }
+
+    /**
+     * @return the dances for the track, or null if the track is not in the index
+     */
+    public List<String> danceIds(String trackId) {
+        return merged.get(trackId);
+    }
+
+    /**
+     * Lookup using this index as an overlay on a base index, as if the sources of both were in one index.
+     * The moreTracks of the overlay were read after those of the base, so they win.
+     * @return the dances for the track, or null if the track is in neither index
+     */
+    public List<String> danceIds(String trackId, TrackIndex base) {
+        // The precedence interleaves the layers of both indexes, so the layers are probed, using an id that is decoded only once
+        TrackDanceStore.Key key = TrackDanceStore.key(trackId);
+        List<String> danceIds = base.config.get(key);
+        if (danceIds == null) {
+            danceIds = config.get(key);
+        }
+        if (danceIds == null) {
+            danceIds = moreTracks.get(key);
+        }
+        if (danceIds == null) {
+            danceIds = base.moreTracks.get(key);
+        }
+        if (danceIds == null) {
+            // Playlists are merged
+            List<String> playlistDanceIds = playlists.get(key);
+            List<String> basePlaylistDanceIds = base.playlists.get(key);
+            if (playlistDanceIds == null || basePlaylistDanceIds == null) {
+                danceIds = (playlistDanceIds == null ? basePlaylistDanceIds : playlistDanceIds);
+            }
+            else {
+                List<String> union = new ArrayList<>(basePlaylistDanceIds);
+                for (String danceId : playlistDanceIds) {
+                    if (!union.contains(danceId)) {
+                        union.add(danceId);
+                    }
+                }
+                danceIds = Collections.unmodifiableList(union);
+            }
+        }
+        return danceIds;
+    }
+
+    public Source source(String key) {
+        return sources.get(key);
+    }
+
+    public Collection<Source> sources() {
+        return sources.values();
+    }
+
+    /**
+     * Add or replace a source. A replaced source keeps its position.
+     */
+    public TrackIndex with(Source source) {
+        source.tracks().freeze();
+        LinkedHashMap<String, Source> sources = new LinkedHashMap<>(this.sources);
+        Source replaced = sources.put(source.key(), source);
+        return new TrackIndex(sources, this, changedKinds(source, replaced));
+    }
+
+    /**
+     * Add or replace multiple sources in one go.
+     */
+    public TrackIndex with(Collection<Source> sources) {
+        LinkedHashMap<String, Source> newSources = new LinkedHashMap<>(this.sources);
+        Set<Kind> changedKinds = EnumSet.noneOf(Kind.class);
+        sources.forEach(source -> {
+            source.tracks().freeze();
+            changedKinds.addAll(changedKinds(source, newSources.put(source.key(), source)));
+        });
+        return new TrackIndex(newSources, this, changedKinds);
+    }
+
+    public TrackIndex without(String key) {
+        if (!sources.containsKey(key)) {
+            return this;
+        }
+        LinkedHashMap<String, Source> sources = new LinkedHashMap<>(this.sources);
+        Source removed = sources.remove(key);
+        return new TrackIndex(sources, this, EnumSet.of(removed.kind()));
+    }
+
+    private static Set<Kind> changedKinds(Source source, Source replaced) {
+        return (replaced == null ? EnumSet.of(source.kind()) : EnumSet.of(source.kind(), replaced.kind()));
+    }
+
+    private static TrackDanceStore compile(Collection<Source> sources, Kind kind) {
+        List<Source> sourcesOfKind = sourcesOfKind(sources, kind);
+        int expectedSize = 0;
+        for (Source source : sourcesOfKind) {
+            expectedSize += source.tracks().size();
+        }
+        TrackDanceStore trackIdToDanceIds = new TrackDanceStore(expectedSize);
+
+        // Playlists allow for the same track to be in multiple playlists, so their dances are merged
+        // This allows for songs to be present in, say, chacha and west coast swing playlists
+        // For moreTracks (and config) the last source read wins
+        sourcesOfKind.forEach(source -> {
+            if (kind == Kind.PLAYLIST) {
+                trackIdToDanceIds.unionAll(source.tracks());
+            }
+            else {
+                trackIdToDanceIds.putAll(source.tracks());
+            }
+        });
+        return trackIdToDanceIds.freeze();
+    }
+
+    /**
+     * The layers with the highest precedence are merged last, so they overwrite the others.
+     */
+    private static TrackDanceStore merge(TrackDanceStore config, TrackDanceStore moreTracks, TrackDanceStore playlists) {
+        TrackDanceStore merged = new TrackDanceStore(config.size() + moreTracks.size() + playlists.size());
+        merged.putAll(playlists);
+        merged.putAll(moreTracks);
+        merged.putAll(config);
+        return merged.freeze();
+    }
+
+    private static List<Source> sourcesOfKind(Collection<Source> sources, Kind kind) {
+        List<Source> sourcesOfKind = new ArrayList<>();
+        sources.forEach(source -> {
+            if (source.kind() == kind) {
+                sourcesOfKind.add(source);
+            }
+        });
+        return sourcesOfKind;
+    }
+}
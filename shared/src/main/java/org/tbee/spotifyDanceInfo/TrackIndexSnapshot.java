@@ -0,0 +1,103 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A versioned binary file holding the sources of a track index, including their fingerprints.
+ * On the next start it is read, so lookups can be served immediately while the sources are revalidated.
+ * It is read into the heap and not memory mapped, because on Windows a mapped file cannot be replaced by the next write.
+ */
+public class TrackIndexSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(TrackIndexSnapshot.class);
+
+    private static final int MAGIC = 0x53444958; // SDIX
+    private static final int VERSION = 1;
+
+    /**
+     * Only sources with a fingerprint are written.
+     */
+    public static void write(Path path, Collection<TrackIndex.Source> sources) throws IOException {
+        List<TrackIndex.Source> persistentSources = sources.stream()
+                .filter(source -> source.fingerprint() != null && source.kind() != TrackIndex.Kind.CONFIG)
+                .toList();
+
+        // Write to a temporary file first, so a crash never leaves a corrupt snapshot behind
+        Files.createDirectories(path.getParent());
+        Path tmpPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath), 64 * 1024));
+            ) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(persistentSources.size());
+                for (TrackIndex.Source source : persistentSources) {
+                    writeString(out, source.key());
+                    writeString(out, source.kind().name());
+                    writeString(out, source.fingerprint());
+                    source.tracks().write(out);
+                }
+            }
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (logger.isInfoEnabled()) logger.info("Wrote " + persistentSources.size() + " source(s) to snapshot " + path);
+        }
+        finally {
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+
+    /**
+     * @return the sources in the snapshot, or an empty list if there is no (usable) snapshot
+     */
+    public static List<TrackIndex.Source> read(Path path) {
+        List<TrackIndex.Source> sources = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return sources;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                if (logger.isInfoEnabled()) logger.info("Ignoring snapshot with an unknown format " + path);
+                return sources;
+            }
+            int numberOfSources = in.getInt();
+            for (int i = 0; i < numberOfSources; i++) {
+                String key = readString(in);
+                TrackIndex.Kind kind = TrackIndex.Kind.valueOf(readString(in));
+                String fingerprint = readString(in);
+                sources.add(new TrackIndex.Source(key, kind, fingerprint, TrackDanceStore.read(in)));
+            }
+            if (logger.isInfoEnabled()) logger.info("Read " + sources.size() + " source(s) from snapshot " + path);
+            return sources;
+        }
+        catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable snapshot " + path, e);
+            return new ArrayList<>();
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
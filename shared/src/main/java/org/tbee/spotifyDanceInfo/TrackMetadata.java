@@ -0,0 +1,38 @@
+package org.tbee.spotifyDanceInfo;
+
+import se.michaelthelin.spotify.model_objects.IPlaylistItem;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Episode;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ * What is shown of a track besides its name and dances.
+ *
+ * @param artist the first artist, or for an episode the show, empty if unknown
+ * @param coverArtUrl the largest image, null if there is none
+ */
+public record TrackMetadata(String id, String name, String artist, String coverArtUrl) {
+
+    /**
+     * The currently playing and queue responses contain full track objects, so usually there is no need to fetch the metadata.
+     * @return null if the item does not hold the metadata
+     */
+    public static TrackMetadata of(IPlaylistItem item) {
+        if (item instanceof Track track && track.getArtists() != null && track.getAlbum() != null) {
+            return new TrackMetadata(track.getId(), track.getName(), firstArtist(track.getArtists()), firstImage(track.getAlbum().getImages()));
+        }
+        if (item instanceof Episode episode && episode.getShow() != null) {
+            return new TrackMetadata(episode.getId(), episode.getName(), episode.getShow().getName(), firstImage(episode.getImages()));
+        }
+        return null;
+    }
+
+    private static String firstArtist(ArtistSimplified[] artists) {
+        return (artists.length == 0 ? "" : artists[0].getName());
+    }
+
+    private static String firstImage(Image[] images) {
+        return (images == null || images.length == 0 ? null : images[0].getUrl()); // Spotify lists the widest first
+    }
+}
@@ -0,0 +1,162 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the metadata of tracks, a dance evening plays the same tracks over and over.
+ * The least recently used track is evicted when the cache is full, and an entry expires after a while, in case the metadata was changed at Spotify.
+ * The cache can be persisted, so it survives a restart.
+ */
+public class TrackMetadataCache {
+    private static final Logger logger = LoggerFactory.getLogger(TrackMetadataCache.class);
+
+    private static final int MAGIC = 0x53444D43; // SDMC
+    private static final int VERSION = 1;
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final Path path;
+    private final LinkedHashMap<String, Entry> idToEntry; // guarded by this
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    private record Entry(TrackMetadata trackMetadata, long expiresAt) {}
+
+    /**
+     * @param path the file the cache is persisted in, null if it is not persisted
+     */
+    public TrackMetadataCache(int maxSize, Duration ttl, Path path) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttl.toMillis();
+        this.path = path;
+        this.idToEntry = new LinkedHashMap<>(16, 0.75f, true) { // access order
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TrackMetadataCache.this.maxSize;
+            }
+        };
+        if (path != null) {
+            read();
+        }
+    }
+
+    /**
+     * @return null if the track is not in the cache, or has expired
+     */
+    public synchronized TrackMetadata get(String id) {
+        Entry entry = idToEntry.get(id);
+        if (entry != null && entry.expiresAt() < System.currentTimeMillis()) {
+            idToEntry.remove(id);
+            entry = null;
+        }
+        (entry == null ? misses : hits).incrementAndGet();
+        return (entry == null ? null : entry.trackMetadata());
+    }
+
+    public synchronized void put(TrackMetadata trackMetadata) {
+        idToEntry.put(trackMetadata.id(), new Entry(trackMetadata, System.currentTimeMillis() + ttlMs));
+    }
+
+    public synchronized int size() {
+        return idToEntry.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Write the cache, if it is persisted.
+     */
+    public void save() {
+        if (path == null) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(idToEntry.entrySet()); // least recently used first, so reading restores the order
+        }
+        try {
+            // Write to a temporary file first, so a crash never leaves a corrupt cache behind
+            Files.createDirectories(path.getParent());
+            Path tmpPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                try (
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)));
+                ) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(entries.size());
+                    for (Map.Entry<String, Entry> entry : entries) {
+                        TrackMetadata trackMetadata = entry.getValue().trackMetadata();
+                        out.writeUTF(trackMetadata.id());
+                        out.writeUTF(trackMetadata.name());
+                        out.writeUTF(trackMetadata.artist());
+                        out.writeUTF(trackMetadata.coverArtUrl() == null ? "" : trackMetadata.coverArtUrl());
+                        out.writeLong(entry.getValue().expiresAt());
+                    }
+                }
+                Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(tmpPath);
+            }
+            if (logger.isInfoEnabled()) logger.info("Wrote " + entries.size() + " track(s) to " + path + ", " + hits() + " hit(s) and " + misses() + " miss(es)");
+        }
+        catch (IOException e) {
+            logger.warn("Writing the track metadata cache failed", e);
+        }
+    }
+
+    private void read() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        ) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                if (logger.isInfoEnabled()) logger.info("Ignoring track metadata cache with an unknown format " + path);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int numberOfEntries = in.readInt();
+            synchronized (this) {
+                for (int i = 0; i < numberOfEntries; i++) {
+                    String id = in.readUTF();
+                    String name = in.readUTF();
+                    String artist = in.readUTF();
+                    String coverArtUrl = in.readUTF();
+                    long expiresAt = in.readLong();
+                    if (expiresAt >= now) {
+                        idToEntry.put(id, new Entry(new TrackMetadata(id, name, artist, coverArtUrl.isEmpty() ? null : coverArtUrl), expiresAt));
+                    }
+                }
+            }
+            if (logger.isInfoEnabled()) logger.info("Read " + size() + " track(s) from " + path);
+        }
+        catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable track metadata cache " + path, e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.IPlaylistItem;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Provides the metadata of tracks, preferably from the response that is already there, otherwise from the cache.
+ * Only then the track is fetched, by default with live priority; a track is only fetched once at a time, and the tracks that are requested together are fetched in batches.
+ */
+public class TrackMetadataLoader {
+    private static final Logger logger = LoggerFactory.getLogger(TrackMetadataLoader.class);
+
+    static final int BATCH_SIZE = 50; // the maximum Spotify allows
+    private static final long BATCH_DELAY_MS = 20; // the time to wait for more requests
+    private static final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Supplier<SpotifyApi> spotifyApiSupplier;
+    private final TrackMetadataCache trackMetadataCache;
+    private final SpotifyCallScheduler.Priority priority;
+    private final Map<String, CompletableFuture<TrackMetadata>> inFlight = new ConcurrentHashMap<>();
+    private final List<String> pending = new ArrayList<>(); // guarded by this
+
+    public TrackMetadataLoader(Supplier<SpotifyApi> spotifyApiSupplier, TrackMetadataCache trackMetadataCache) {
+        this(spotifyApiSupplier, trackMetadataCache, SpotifyCallScheduler.Priority.LIVE);
+    }
+
+    /**
+     * @param priority ingest for loaders that do not serve the live display
+     */
+    public TrackMetadataLoader(Supplier<SpotifyApi> spotifyApiSupplier, TrackMetadataCache trackMetadataCache, SpotifyCallScheduler.Priority priority) {
+        this.spotifyApiSupplier = spotifyApiSupplier;
+        this.trackMetadataCache = trackMetadataCache;
+        this.priority = priority;
+    }
+
+    /**
+     * @return completes with null if Spotify does not know the track
+     */
+    public CompletableFuture<TrackMetadata> get(IPlaylistItem item) {
+        TrackMetadata trackMetadata = TrackMetadata.of(item);
+        if (trackMetadata != null) {
+            trackMetadataCache.put(trackMetadata);
+            return CompletableFuture.completedFuture(trackMetadata);
+        }
+        return get(item.getId());
+    }
+
+    /**
+     * @return completes with null if Spotify does not know the track
+     */
+    public CompletableFuture<TrackMetadata> get(String id) {
+        TrackMetadata trackMetadata = trackMetadataCache.get(id);
+        if (trackMetadata != null) {
+            return CompletableFuture.completedFuture(trackMetadata);
+        }
+
+        // Join a fetch that is already underway
+        CompletableFuture<TrackMetadata> future = new CompletableFuture<>();
+        CompletableFuture<TrackMetadata> inFlightFuture = inFlight.putIfAbsent(id, future);
+        if (inFlightFuture != null) {
+            return inFlightFuture;
+        }
+
+        // The first pending id schedules the batch, the others are added to it
+        boolean scheduled;
+        synchronized (this) {
+            scheduled = !pending.isEmpty();
+            pending.add(id);
+        }
+        if (!scheduled) {
+            CompletableFuture.delayedExecutor(BATCH_DELAY_MS, TimeUnit.MILLISECONDS, executorService).execute(this::fetchPending);
+        }
+        return future;
+    }
+
+    private void fetchPending() {
+        List<String> ids;
+        synchronized (this) {
+            ids = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+            fetch(ids.subList(i, Math.min(i + BATCH_SIZE, ids.size())));
+        }
+    }
+
+    private void fetch(List<String> ids) {
+        try {
+            SpotifyApi spotifyApi = spotifyApiSupplier.get();
+            Track[] tracks = SpotifyCallScheduler.instance().call(spotifyApi.getClientId(), priority, () -> spotifyApi
+                    .getSeveralTracks(ids.toArray(String[]::new))
+                    .build().execute());
+            if (logger.isDebugEnabled()) logger.debug("Fetched the metadata of " + ids.size() + " track(s)");
+            Map<String, TrackMetadata> idToTrackMetadata = new HashMap<>();
+            for (Track track : tracks) {
+                if (track != null) { // unknown ids result in null
+                    TrackMetadata trackMetadata = TrackMetadata.of(track);
+                    trackMetadataCache.put(trackMetadata);
+                    idToTrackMetadata.put(track.getId(), trackMetadata);
+                }
+            }
+            ids.forEach(id -> inFlight.remove(id).complete(idToTrackMetadata.get(id)));
+        }
+        catch (Exception e) {
+            logger.warn("Fetching the metadata of " + ids.size() + " track(s) failed: " + e.getMessage());
+            ids.forEach(id -> inFlight.remove(id).completeExceptionally(e));
+        }
+    }
+}
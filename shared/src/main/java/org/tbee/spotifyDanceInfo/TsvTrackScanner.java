@@ -0,0 +1,173 @@
+package org.tbee.spotifyDanceInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Scans the track id and dance columns of a tab separated file, directly on the bytes of the file.
+ * Spotify ids are decoded from the bytes into two longs, and each distinct dance text is decoded only once,
+ * so no objects are created per row.
+ *
+ * The format is the same as the OpenCSV based reader in Cfg: the first line is a header, quotes have no special meaning.
+ */
+public class TsvTrackScanner {
+
+    private final int idIdx;
+    private final int danceIdx;
+    private final TrackDanceStore tracks;
+    private final Function<String, List<String>> danceTextToDances;
+
+    // Small open addressing table of dance text (as bytes) to dance combination ref
+    private byte[][] danceTexts = new byte[64][];
+    private int[] danceTextRefs = new int[64];
+    private int numberOfDanceTexts = 0;
+
+    public TsvTrackScanner(int idIdx, int danceIdx, TrackDanceStore tracks, Function<String, List<String>> danceTextToDances) {
+        this.idIdx = idIdx;
+        this.danceIdx = danceIdx;
+        this.tracks = tracks;
+        this.danceTextToDances = danceTextToDances;
+    }
+
+    /**
+     * The file is read into the heap and not memory mapped: it is only scanned once, and on Windows a mapping locks the file
+     * until it is garbage collected, so the user could not save it in the meantime.
+     * @return the number of rows read
+     */
+    public int scan(Path path) throws IOException {
+        return scan(ByteBuffer.wrap(Files.readAllBytes(path)));
+    }
+
+    /**
+     * @return the number of rows read
+     */
+    public int scan(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int lastIdx = Math.max(idIdx, danceIdx);
+        int cnt = 0;
+
+        // skip header
+        int pos = endOfLine(bytes, bytes.position(), limit) + 1;
+
+        while (pos < limit) {
+            int eol = endOfLine(bytes, pos, limit);
+            int end = (eol > pos && bytes.get(eol - 1) == '\r' ? eol - 1 : eol);
+
+            // Locate the two columns
+            int idStart = -1;
+            int idEnd = -1;
+            int danceStart = -1;
+            int danceEnd = -1;
+            int col = 0;
+            int fieldStart = pos;
+            for (int i = pos; i <= end && col <= lastIdx; i++) {
+                if (i == end || bytes.get(i) == '\t') {
+                    if (col == idIdx) {
+                        idStart = fieldStart;
+                        idEnd = i;
+                    }
+                    if (col == danceIdx) {
+                        danceStart = fieldStart;
+                        danceEnd = i;
+                    }
+                    col++;
+                    fieldStart = i + 1;
+                }
+            }
+
+            // Store, lines without an id are skipped
+            if (idStart >= 0 && idEnd > idStart) {
+                int ref = danceStart < 0 ? danceTextRef(bytes, 0, 0) : danceTextRef(bytes, danceStart, danceEnd - danceStart);
+                int idLength = idEnd - idStart;
+                if (TrackDanceStore.isSpotifyId(bytes, idStart, idLength)) {
+                    tracks.putRef(TrackDanceStore.hi(bytes, idStart), TrackDanceStore.lo(bytes, idStart), ref);
+                }
+                else {
+                    tracks.putRef(decode(bytes, idStart, idLength), ref);
+                }
+                cnt++;
+            }
+            pos = eol + 1;
+        }
+        return cnt;
+    }
+
+    private static int endOfLine(ByteBuffer bytes, int pos, int limit) {
+        while (pos < limit && bytes.get(pos) != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int danceTextRef(ByteBuffer bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes.get(offset + i);
+        }
+
+        int mask = danceTexts.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (danceTexts[slot] != null) {
+            if (equals(danceTexts[slot], bytes, offset, length)) {
+                return danceTextRefs[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // New dance text: decode it once
+        byte[] danceText = new byte[length];
+        bytes.get(offset, danceText);
+        int ref = tracks.danceCombinationRef(danceTextToDances.apply(new String(danceText, StandardCharsets.UTF_8)));
+        danceTexts[slot] = danceText;
+        danceTextRefs[slot] = ref;
+        numberOfDanceTexts++;
+        if (numberOfDanceTexts * 2 > danceTexts.length) {
+            growDanceTexts();
+        }
+        return ref;
+    }
+
+    private static boolean equals(byte[] danceText, ByteBuffer bytes, int offset, int length) {
+        if (danceText.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (danceText[i] != bytes.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growDanceTexts() {
+        byte[][] oldDanceTexts = danceTexts;
+        int[] oldDanceTextRefs = danceTextRefs;
+        danceTexts = new byte[oldDanceTexts.length * 2][];
+        danceTextRefs = new int[oldDanceTexts.length * 2];
+        int mask = danceTexts.length - 1;
+        for (int i = 0; i < oldDanceTexts.length; i++) {
+            byte[] danceText = oldDanceTexts[i];
+            if (danceText != null) {
+                int hash = Arrays.hashCode(danceText); // same hash as calculated over the buffer
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (danceTexts[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                danceTexts[slot] = danceText;
+                danceTextRefs[slot] = oldDanceTextRefs[i];
+            }
+        }
+    }
+
+    private static String decode(ByteBuffer bytes, int offset, int length) {
+        byte[] text = new byte[length];
+        bytes.get(offset, text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
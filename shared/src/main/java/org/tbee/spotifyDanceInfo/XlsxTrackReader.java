@@ -0,0 +1,141 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads the track id and dance columns from a xlsx sheet using POI's event API.
+ * The sheet is parsed with SAX and only the two columns are materialized, instead of building the DOM of the whole workbook.
+ */
+public class XlsxTrackReader {
+
+    /**
+     * A file is read using random access, so the package is not copied into memory.
+     */
+    public static int read(File file, int sheetIdx, int idIdx, int danceIdx, BiConsumer<String, String> consumer) throws IOException {
+        try (
+            OPCPackage opcPackage = OPCPackage.open(file, PackageAccess.READ);
+        ) {
+            return read(opcPackage, sheetIdx, idIdx, danceIdx, consumer);
+        }
+        catch (OpenXML4JException e) {
+            throw new IOException("Problem reading " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Opening a package from a stream buffers the whole zip in memory, so the stream is spooled to a temporary file first.
+     */
+    public static int read(InputStream inputStream, int sheetIdx, int idIdx, int danceIdx, BiConsumer<String, String> consumer) throws IOException {
+        Path tmpPath = Files.createTempFile("upload", ".xlsx");
+        try {
+            Files.copy(inputStream, tmpPath, StandardCopyOption.REPLACE_EXISTING);
+            return read(tmpPath.toFile(), sheetIdx, idIdx, danceIdx, consumer);
+        }
+        finally {
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+
+    /**
+     * @return the number of rows passed to the consumer
+     */
+    private static int read(OPCPackage opcPackage, int sheetIdx, int idIdx, int danceIdx, BiConsumer<String, String> consumer) throws IOException, OpenXML4JException {
+        try {
+            XSSFReader xssfReader = new XSSFReader(opcPackage);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(opcPackage, false);
+            StylesTable stylesTable = xssfReader.getStylesTable();
+
+            // Find the sheet
+            Iterator<InputStream> sheets = xssfReader.getSheetsData();
+            for (int i = 0; i < sheetIdx && sheets.hasNext(); i++) {
+                sheets.next().close();
+            }
+            if (!sheets.hasNext()) {
+                throw new IOException("Sheet " + sheetIdx + " does not exist");
+            }
+
+            // Stream the sheet
+            TwoColumnHandler twoColumnHandler = new TwoColumnHandler(idIdx, danceIdx, consumer);
+            try (
+                InputStream sheetInputStream = sheets.next();
+            ) {
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new XSSFSheetXMLHandler(stylesTable, sharedStrings, twoColumnHandler, new DataFormatter(), false));
+                xmlReader.parse(new InputSource(sheetInputStream));
+            }
+            return twoColumnHandler.cnt;
+        }
+        catch (SAXException | ParserConfigurationException e) {
+            throw new IOException("Problem parsing sheet " + sheetIdx, e);
+        }
+    }
+
+    private static class TwoColumnHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final int idIdx;
+        private final int danceIdx;
+        private final BiConsumer<String, String> consumer;
+        private int cnt = 0;
+
+        private int col;
+        private String id;
+        private String danceText;
+
+        private TwoColumnHandler(int idIdx, int danceIdx, BiConsumer<String, String> consumer) {
+            this.idIdx = idIdx;
+            this.danceIdx = danceIdx;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            col = -1;
+            id = null;
+            danceText = null;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            // Empty cells are skipped by the handler, so the column must be taken from the reference when present
+            col = (cellReference == null ? col + 1 : new CellReference(cellReference).getCol());
+            if (col == idIdx) {
+                id = formattedValue;
+            }
+            else if (col == danceIdx) {
+                danceText = formattedValue;
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            // skip the header row and rows without an id
+            if (rowNum == 0 || id == null || id.isBlank()) {
+                return;
+            }
+            consumer.accept(id, danceText == null ? "" : danceText);
+            cnt++;
+        }
+    }
+}
@@ -12,6 +12,10 @@ public class CfgForTest extends Cfg<CfgForTest> {
         readMoreTracks();
     }
 
+    public CfgForTest(Cfg<?> base) {
+        super(base);
+    }
+
     @Override
     public void remember(String id, String v) {
         storage.put(id, v);
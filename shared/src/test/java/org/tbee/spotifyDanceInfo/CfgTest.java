@@ -3,6 +3,17 @@ package org.tbee.spotifyDanceInfo;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class CfgTest {
 
     @Test
@@ -24,4 +35,91 @@ public class CfgTest {
         Assertions.assertEquals("[ew, ru]", cfg.trackIdToDanceIds("xls002").toString());
         Assertions.assertEquals("[Engelse Wals, Rumba]", cfg.trackIdToDanceIds("xls004").toString());
     }
+
+    @Test
+    public void precedence() {
+        Cfg cfg = new CfgForTest("precedence.tecl", false, false);
+        Assertions.assertEquals("[sa]", cfg.trackIdToDanceIds("tsv001").toString()); // config tracks win
+        Assertions.assertEquals("[cc, sa]", cfg.trackIdToDanceIds("tsv002").toString()); // blank dance falls through
+        Assertions.assertEquals("[]", cfg.trackIdToDanceIds("unknown").toString());
+    }
+
+    @Test
+    public void overlay() throws IOException {
+        Cfg<?> base = new CfgForTest("precedence.tecl", false, false);
+        Cfg<?> overlay = new CfgForTest(base);
+        overlay.readMoreTracksTSV("web", new ByteArrayInputStream("id\tdance\ntsv001\tru\ntsv002\tru\nweb001\tji\n".getBytes()), 0, 1);
+        Assertions.assertEquals("[sa]", overlay.trackIdToDanceIds("tsv001").toString()); // config tracks of the base win
+        Assertions.assertEquals("[ru]", overlay.trackIdToDanceIds("tsv002").toString()); // the upload wins over the moreTracks of the base
+        Assertions.assertEquals("[ji]", overlay.trackIdToDanceIds("web001").toString());
+        Assertions.assertEquals("[]", base.trackIdToDanceIds("web001").toString());
+    }
+
+    @Test
+    public void overlayIsNotifiedOfBaseIndexChanges() throws IOException {
+        Cfg<?> base = new CfgForTest("precedence.tecl", false, false);
+        Cfg<?> overlay = new CfgForTest(base);
+        List<Set<Cfg.Change>> changes = new ArrayList<>();
+        overlay.onChange((cfg, c) -> changes.add(c));
+        base.readMoreTracksTSV("moreTracks", new ByteArrayInputStream("id\tdance\nmore001\tji\n".getBytes()), 0, 1);
+        Assertions.assertEquals("[[INDEX]]", changes.toString());
+        Assertions.assertEquals("[ji]", overlay.trackIdToDanceIds("more001").toString());
+    }
+
+    @Test
+    public void playlistsMerge() {
+        TrackIndex trackIndex = TrackIndex.EMPTY
+                .with(new TrackIndex.Source("playlist1", TrackIndex.Kind.PLAYLIST, store(Map.of("id1", List.of("cc"), "id2", List.of("cc")))))
+                .with(new TrackIndex.Source("playlist2", TrackIndex.Kind.PLAYLIST, store(Map.of("id1", List.of("wcs")))))
+                .with(new TrackIndex.Source("moreTracks", TrackIndex.Kind.MORE_TRACKS, store(Map.of("id2", List.of("sa")))));
+        Assertions.assertEquals("[cc, wcs]", trackIndex.danceIds("id1").toString());
+        Assertions.assertEquals("[sa]", trackIndex.danceIds("id2").toString()); // moreTracks win over playlists
+        Assertions.assertEquals("[wcs]", trackIndex.without("playlist1").danceIds("id1").toString());
+    }
+
+    @Test
+    public void layersAndOverlay() {
+        String spotifyId = "7AslBsiVLQAGrmFmi79ZeK";
+        TrackIndex base = TrackIndex.EMPTY
+                .with(new TrackIndex.Source("config", TrackIndex.Kind.CONFIG, store(Map.of("id1", List.of("sa")))))
+                .with(new TrackIndex.Source("moreTracks", TrackIndex.Kind.MORE_TRACKS, store(Map.of("id1", List.of("ru"), "id2", List.of("ru"), spotifyId, List.of("ru")))))
+                .with(new TrackIndex.Source("playlist", TrackIndex.Kind.PLAYLIST, store(Map.of("id3", List.of("cc"), spotifyId, List.of("cc")))));
+        Assertions.assertEquals("[sa]", base.danceIds("id1").toString()); // config wins
+        Assertions.assertEquals("[ru]", base.danceIds(spotifyId).toString()); // moreTracks win over playlists
+        Assertions.assertEquals("[cc]", base.danceIds("id3").toString());
+        Assertions.assertNull(base.danceIds("unknown"));
+
+        TrackIndex overlay = TrackIndex.EMPTY
+                .with(new TrackIndex.Source("upload", TrackIndex.Kind.MORE_TRACKS, store(Map.of("id1", List.of("ji"), "id2", List.of("ji")))))
+                .with(new TrackIndex.Source("sessionPlaylist", TrackIndex.Kind.PLAYLIST, store(Map.of("id3", List.of("wcs", "cc")))));
+        Assertions.assertEquals("[sa]", overlay.danceIds("id1", base).toString()); // config of the base wins
+        Assertions.assertEquals("[ji]", overlay.danceIds("id2", base).toString()); // the upload wins over the moreTracks of the base
+        Assertions.assertEquals("[ru]", overlay.danceIds(spotifyId, base).toString());
+        Assertions.assertEquals("[cc, wcs]", overlay.danceIds("id3", base).toString()); // playlists are merged
+        Assertions.assertNull(overlay.danceIds("unknown", base));
+    }
+
+    @Test
+    public void tsvScannerMatchesOpenCSV() throws IOException {
+        File file = new File("src/main/resources/trackToDance.tsv");
+        Cfg<?> cfg = new CfgForTest("tsv.tecl", false, false);
+        try (
+            InputStream inputStream = new FileInputStream(file);
+        ) {
+            cfg.readMoreTracksTSV("opencsv", inputStream, 0, 1);
+        }
+        cfg.readMoreTracksTSV("scanner", file, 0, 1);
+        Map<String, List<String>> opencsv = new HashMap<>();
+        cfg.trackIndex().source("opencsv").tracks().forEach(opencsv::put);
+        Map<String, List<String>> scanner = new HashMap<>();
+        cfg.trackIndex().source("scanner").tracks().forEach(scanner::put);
+        Assertions.assertEquals(4, scanner.size());
+        Assertions.assertEquals(opencsv, scanner);
+    }
+
+    private static TrackDanceStore store(Map<String, List<String>> tracks) {
+        TrackDanceStore trackDanceStore = new TrackDanceStore();
+        tracks.forEach(trackDanceStore::put);
+        return trackDanceStore;
+    }
 }
@@ -0,0 +1,81 @@
+package org.tbee.spotifyDanceInfo;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoverArtCacheTest {
+
+    private HttpServer httpServer;
+    private final AtomicInteger requests = new AtomicInteger(0);
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        // Every image is 100 bytes, its contents are derived from the path
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext("/image/", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = exchange.getRequestURI().getPath().repeat(100).substring(0, 100).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (
+                OutputStream outputStream = exchange.getResponseBody();
+            ) {
+                outputStream.write(body);
+            }
+        });
+        httpServer.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        httpServer.stop(0);
+    }
+
+    @Test
+    public void downloadOnce(@TempDir Path directory) throws IOException {
+        CoverArtCache coverArtCache = new CoverArtCache(directory, 1000);
+        byte[] contents = coverArtCache.read(url("a"));
+        Assertions.assertArrayEquals(contents, coverArtCache.read(url("a")));
+        Assertions.assertEquals(1, requests.get());
+
+        // A new instance finds the images on disk
+        Assertions.assertArrayEquals(contents, new CoverArtCache(directory, 1000).read(url("a")));
+        Assertions.assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed(@TempDir Path directory) throws IOException {
+        CoverArtCache coverArtCache = new CoverArtCache(directory, 250);
+        coverArtCache.read(url("a"));
+        coverArtCache.read(url("b"));
+        coverArtCache.read(url("a"));
+        coverArtCache.read(url("c"));
+        Assertions.assertTrue(coverArtCache.contains(url("a")));
+        Assertions.assertFalse(coverArtCache.contains(url("b")));
+        Assertions.assertTrue(coverArtCache.contains(url("c")));
+    }
+
+    @Test
+    public void warmUp(@TempDir Path directory) throws IOException {
+        CoverArtCache coverArtCache = new CoverArtCache(directory, 10_000);
+        coverArtCache.read(url("a"));
+        Assertions.assertEquals(2, coverArtCache.warmUp(List.of(url("a"), url("b"), url("c"), url("c"))).join());
+        Assertions.assertEquals(3, requests.get());
+        Assertions.assertTrue(coverArtCache.contains(url("c")));
+    }
+
+    private String url(String name) {
+        return "http://localhost:" + httpServer.getAddress().getPort() + "/image/" + name;
+    }
+}
@@ -0,0 +1,254 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads generated libraries of 10k to 1M tracks through the configuration, and checks the load time, the peak heap and the merged result.
+ * The budgets are roughly double of what a developer machine needs, so a regression shows before the load time doubles in production.
+ * Slower machines can scale the budgets using -Dstress.budgetFactor=...
+ *
+ * These tests take minutes, and are only run using the stress profile: mvn test -Pstress
+ */
+@Tag("stress")
+public class IngestStressTest {
+    private static final Logger logger = LoggerFactory.getLogger(IngestStressTest.class);
+
+    private static final String DUPLICATE_DANCE = "wcs";
+    private static final int DUPLICATE_EVERY = 1000; // every so many tracks are listed again at the end of a source
+    private static final double BUDGET_FACTOR = Double.parseDouble(System.getProperty("stress.budgetFactor", "1"));
+
+    @TempDir
+    static Path tempDir;
+    private static final Map<Integer, Library> libraries = new HashMap<>();
+
+    @Test
+    public void ingest10k() throws Exception {
+        ingest(10_000, false, 5, 256);
+    }
+
+    @Test
+    public void ingest10kInBackground() throws Exception {
+        ingest(10_000, true, 5, 256);
+    }
+
+    @Test
+    public void ingest100k() throws Exception {
+        ingest(100_000, false, 15, 512);
+    }
+
+    @Test
+    public void ingest100kInBackground() throws Exception {
+        ingest(100_000, true, 15, 512);
+    }
+
+    @Test
+    public void ingest1M() throws Exception {
+        ingest(1_000_000, false, 90, 1536);
+    }
+
+    @Test
+    public void ingest1MInBackground() throws Exception {
+        ingest(1_000_000, true, 90, 1536);
+    }
+
+    private void ingest(int tracks, boolean runInBackground, int maxSeconds, int maxHeapMB) throws Exception {
+        Library library = library(tracks);
+
+        // Read
+        System.gc();
+        resetPeakHeap();
+        long start = System.nanoTime();
+        Cfg<?> cfg = new CfgForTest(library.config().toString(), runInBackground, false);
+        while (cfg.getNumberOfActiveBackgroundTasks() > 0) {
+            Thread.sleep(10);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long heapMB = peakHeap() / 1024 / 1024;
+        if (logger.isInfoEnabled()) logger.info("Ingest of " + tracks + " tracks" + (runInBackground ? " in background" : "") + ": " + String.format("%.1f", seconds) + " s, peak heap " + heapMB + " MB");
+
+        Assertions.assertTrue(seconds <= maxSeconds * BUDGET_FACTOR, "Ingest of " + tracks + " tracks took " + seconds + " s, the budget is " + maxSeconds * BUDGET_FACTOR + " s");
+        Assertions.assertTrue(heapMB <= maxHeapMB * BUDGET_FACTOR, "Ingest of " + tracks + " tracks peaked at " + heapMB + " MB heap, the budget is " + maxHeapMB * BUDGET_FACTOR + " MB");
+        assertMerged(cfg, library, runInBackground);
+    }
+
+    /**
+     * Sources are read in the order tsv, xlsx, xls and the last source read wins.
+     * In the background that order is not fixed, so a track listed in multiple sources may have the dances of any of them.
+     */
+    private void assertMerged(Cfg<?> cfg, Library library, boolean runInBackground) {
+        for (int track = 0; track < library.end(); track++) {
+            String trackId = TrackFixtures.trackId(track);
+            List<String> danceIds = cfg.trackIdToDanceIds(trackId);
+            List<String> expected = null;
+            for (Source source : library.sources()) {
+                if (!source.contains(track)) {
+                    continue;
+                }
+                List<String> sourceDanceIds = cfg.danceTextToDances(source.danceText(track));
+                if (runInBackground && danceIds.equals(sourceDanceIds)) {
+                    expected = sourceDanceIds;
+                    break;
+                }
+                expected = sourceDanceIds;
+            }
+            Assertions.assertEquals(expected, danceIds, "Track " + track + " " + trackId);
+        }
+        Assertions.assertEquals(List.of(""), cfg.trackIdToDanceIds(TrackFixtures.trackId(library.end())));
+    }
+
+    /**
+     * Every source starts at a different track, so part of the tracks are listed in multiple sources.
+     */
+    private static synchronized Library library(int tracks) throws IOException {
+        Library library = libraries.get(tracks);
+        if (library != null) {
+            return library;
+        }
+
+        int xlsRows = Math.min(tracks, TrackFixtures.XLS_MAX_ROWS);
+        Source tsv = new Source("tsv", 0, tracks, 1);
+        Source xlsx = new Source("xlsx", tracks / 2, tracks, 2);
+        Source xls = new Source("xls", tracks - xlsRows / 2, xlsRows - xlsRows / DUPLICATE_EVERY - 1, 3); // leave room for the duplicates
+        File tsvFile = writeTsv(tsv);
+        File xlsxFile = writeExcel(xlsx, new SXSSFWorkbook(1000));
+        File xlsFile = writeExcel(xls, new HSSFWorkbook());
+
+        Path config = tempDir.resolve("stress" + tracks + ".tecl");
+        Files.writeString(config, """
+                @version 1
+
+                moreTracks {
+                    tsv {
+                        | idIdx | danceIdx | uri |
+                        | 0     | 1        | "%s" |
+                    }
+                    xslx {
+                        | idIdx | danceIdx | uri |
+                        | 0     | 1        | "%s" |
+                    }
+                    xsl {
+                        | idIdx | danceIdx | uri |
+                        | 0     | 1        | "%s" |
+                    }
+                }
+                """.formatted(tsvFile.toURI(), xlsxFile.toURI(), xlsFile.toURI()));
+
+        library = new Library(config, List.of(tsv, xlsx, xls), Math.max(tsv.end(), Math.max(xlsx.end(), xls.end())));
+        libraries.put(tracks, library);
+        return library;
+    }
+
+    private static File writeTsv(Source source) throws IOException {
+        File file = tempDir.resolve(source.name() + source.count() + ".tsv").toFile();
+        try (
+            BufferedWriter writer = Files.newBufferedWriter(file.toPath());
+        ) {
+            writer.write("trackId\tdanceId\n");
+            for (int track = source.start(); track < source.end(); track++) {
+                writer.append(TrackFixtures.trackId(track)).append('\t').append(source.rowDanceText(track)).append('\n');
+            }
+            for (int track = source.start(); track < source.end(); track += DUPLICATE_EVERY) {
+                writer.append(TrackFixtures.trackId(track)).append('\t').append(DUPLICATE_DANCE).append('\n');
+            }
+        }
+        return file;
+    }
+
+    private static File writeExcel(Source source, Workbook workbook) throws IOException {
+        File file = tempDir.resolve(source.name() + source.count() + "." + source.name()).toFile();
+        try (
+            workbook;
+            OutputStream outputStream = new FileOutputStream(file);
+        ) {
+            Sheet sheet = workbook.createSheet("tracks");
+            int rowIdx = 0;
+            Row header = sheet.createRow(rowIdx++);
+            header.createCell(0).setCellValue("trackId");
+            header.createCell(1).setCellValue("danceId");
+            for (int track = source.start(); track < source.end(); track++) {
+                Row row = sheet.createRow(rowIdx++);
+                row.createCell(0).setCellValue(TrackFixtures.trackId(track));
+                row.createCell(1).setCellValue(source.rowDanceText(track));
+            }
+            for (int track = source.start(); track < source.end(); track += DUPLICATE_EVERY) {
+                Row row = sheet.createRow(rowIdx++);
+                row.createCell(0).setCellValue(TrackFixtures.trackId(track));
+                row.createCell(1).setCellValue(DUPLICATE_DANCE);
+            }
+            workbook.write(outputStream);
+            if (workbook instanceof SXSSFWorkbook sxssfWorkbook) {
+                sxssfWorkbook.dispose(); // remove the temporary files
+            }
+        }
+        return file;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPoolMXBean.getType() == MemoryType.HEAP) {
+                memoryPoolMXBean.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean memoryPoolMXBean : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPoolMXBean.getType() == MemoryType.HEAP) {
+                peak += memoryPoolMXBean.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private record Library(Path config, List<Source> sources, int end) {}
+
+    /**
+     * The tracks start..start+count, followed by every DUPLICATE_EVERY-th of those tracks again with another dance.
+     * @param seed makes the dances differ per source
+     */
+    private record Source(String name, int start, int count, int seed) {
+        int end() {
+            return start + count;
+        }
+
+        boolean contains(int track) {
+            return track >= start && track < end();
+        }
+
+        String rowDanceText(int track) {
+            return TrackFixtures.danceText(track * 31 + seed * 7);
+        }
+
+        /**
+         * The row that is read last wins within a source.
+         */
+        String danceText(int track) {
+            return ((track - start) % DUPLICATE_EVERY == 0 ? DUPLICATE_DANCE : rowDanceText(track));
+        }
+    }
+}
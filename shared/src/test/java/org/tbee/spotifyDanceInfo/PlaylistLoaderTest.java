@@ -0,0 +1,29 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class PlaylistLoaderTest {
+
+    @Test
+    public void parseTrackIds() throws IOException {
+        String json = """
+                {"items":[
+                    {"track":{"id":"7AslBsiVLQAGrmFmi79ZeK","name":"Some song"}},
+                    {"track":null},
+                    {"track":{"id":null,"name":"A local file"}},
+                    {"track":{"name":"Another song","id":"11dAtktxQQzipxuLqljEfY","album":{"name":"skipped"}}}
+                ],"next":null,"total":4}
+                """;
+        List<String> trackIds = PlaylistLoader.parseTrackIds(json, "test");
+        Assertions.assertEquals(List.of("7AslBsiVLQAGrmFmi79ZeK", "11dAtktxQQzipxuLqljEfY"), trackIds);
+    }
+
+    @Test
+    public void parseUnexpected() {
+        Assertions.assertThrows(IOException.class, () -> PlaylistLoader.parseTrackIds("[]", "test"));
+    }
+}
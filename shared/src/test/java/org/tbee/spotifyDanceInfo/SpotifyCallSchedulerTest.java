@@ -0,0 +1,57 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+public class SpotifyCallSchedulerTest {
+
+    private static final long OPEN_MS = 200;
+
+    @Test
+    public void circuitRecoversWhenTheTrialWaitsForAToken() throws Exception {
+        SpotifyCallScheduler spotifyCallScheduler = new SpotifyCallScheduler(OPEN_MS);
+
+        // Use up the bucket, and open the circuit with the last calls
+        for (int i = 0; i < 15; i++) {
+            spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> "ok");
+        }
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThrows(IOException.class, () -> spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> {
+                throw new IOException("failed");
+            }));
+        }
+        Assertions.assertThrows(IOException.class, () -> spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> "open"));
+
+        // The trial call has to wait for the tokens ingest needs
+        Thread.sleep(OPEN_MS + 50);
+        long start = System.currentTimeMillis();
+        Assertions.assertEquals("trial", spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.INGEST, () -> "trial"));
+        Assertions.assertTrue(System.currentTimeMillis() - start > 100, "the trial did not wait for a token");
+
+        // Closed again
+        Assertions.assertEquals("closed", spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> "closed"));
+    }
+
+    @Test
+    public void interruptedTrialLetsAnotherCallerTry() throws Exception {
+        SpotifyCallScheduler spotifyCallScheduler = new SpotifyCallScheduler(OPEN_MS);
+        for (int i = 0; i < 15; i++) {
+            spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> "ok");
+        }
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThrows(IOException.class, () -> spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> {
+                throw new IOException("failed");
+            }));
+        }
+        Thread.sleep(OPEN_MS + 50);
+
+        // The trial is interrupted while it waits for a token
+        Thread.currentThread().interrupt();
+        Assertions.assertThrows(IOException.class, () -> spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.INGEST, () -> "interrupted"));
+        Assertions.assertTrue(Thread.interrupted());
+
+        Assertions.assertEquals("trial", spotifyCallScheduler.call("client", SpotifyCallScheduler.Priority.LIVE, () -> "trial"));
+    }
+}
@@ -0,0 +1,101 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TrackDanceStoreTest {
+
+    @Test
+    public void spotifyIds() {
+        TrackDanceStore trackDanceStore = new TrackDanceStore();
+        trackDanceStore.put("7AslBsiVLQAGrmFmi79ZeK", List.of("ru"));
+        trackDanceStore.put("11dAtktxQQzipxuLqljEfY", List.of("sf", "cc"));
+        trackDanceStore.put("4qjrCkcVbsYlitCqbBkeKe", List.of("ru"));
+        Assertions.assertTrue(TrackDanceStore.isSpotifyId("7AslBsiVLQAGrmFmi79ZeK"));
+        Assertions.assertEquals("[ru]", trackDanceStore.get("7AslBsiVLQAGrmFmi79ZeK").toString());
+        Assertions.assertEquals("[sf, cc]", trackDanceStore.get("11dAtktxQQzipxuLqljEfY").toString());
+        Assertions.assertNull(trackDanceStore.get("2Br0Vp8EgpFcOVWc0NL5yt"));
+        Assertions.assertEquals(2, trackDanceStore.numberOfDanceCombinations());
+        Assertions.assertEquals("7AslBsiVLQAGrmFmi79ZeK", TrackDanceStore.id(TrackDanceStore.hi("7AslBsiVLQAGrmFmi79ZeK"), TrackDanceStore.lo("7AslBsiVLQAGrmFmi79ZeK")));
+    }
+
+    @Test
+    public void key() {
+        TrackDanceStore.Key key = TrackDanceStore.key("7AslBsiVLQAGrmFmi79ZeK");
+        Assertions.assertEquals(TrackDanceStore.hi("7AslBsiVLQAGrmFmi79ZeK"), key.hi());
+        Assertions.assertEquals(TrackDanceStore.lo("7AslBsiVLQAGrmFmi79ZeK"), key.lo());
+        Assertions.assertNull(key.otherId());
+        Assertions.assertEquals("tsv001", TrackDanceStore.key("tsv001").otherId());
+
+        TrackDanceStore trackDanceStore = new TrackDanceStore();
+        trackDanceStore.put("7AslBsiVLQAGrmFmi79ZeK", List.of("ru"));
+        trackDanceStore.put("tsv001", List.of("cc"));
+        Assertions.assertEquals("[ru]", trackDanceStore.get(key).toString());
+        Assertions.assertEquals("[cc]", trackDanceStore.get(TrackDanceStore.key("tsv001")).toString());
+    }
+
+    @Test
+    public void otherIds() {
+        TrackDanceStore trackDanceStore = new TrackDanceStore();
+        trackDanceStore.put("tsv001", List.of("cc"));
+        trackDanceStore.put("ZZZZZZZZZZZZZZZZZZZZZZ", List.of("cc")); // does not fit in 128 bits
+        Assertions.assertFalse(TrackDanceStore.isSpotifyId("ZZZZZZZZZZZZZZZZZZZZZZ"));
+        Assertions.assertEquals("[cc]", trackDanceStore.get("tsv001").toString());
+        Assertions.assertEquals("[cc]", trackDanceStore.get("ZZZZZZZZZZZZZZZZZZZZZZ").toString());
+        Assertions.assertEquals(2, trackDanceStore.size());
+    }
+
+    @Test
+    public void growAndIterate() {
+        TrackDanceStore trackDanceStore = new TrackDanceStore();
+        Map<String, List<String>> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String id = String.format("%022d", i);
+            List<String> dances = List.of("d" + (i % 10));
+            trackDanceStore.put(id, dances);
+            expected.put(id, dances);
+        }
+        Map<String, List<String>> actual = new HashMap<>();
+        trackDanceStore.forEach(actual::put);
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(10, trackDanceStore.numberOfDanceCombinations());
+    }
+
+    @Test
+    public void frozen() {
+        TrackDanceStore trackDanceStore = new TrackDanceStore().freeze();
+        Assertions.assertThrows(IllegalStateException.class, () -> trackDanceStore.put("tsv001", List.of("cc")));
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        TrackDanceStore trackDanceStore = new TrackDanceStore();
+        trackDanceStore.put("7AslBsiVLQAGrmFmi79ZeK", List.of("ru"));
+        trackDanceStore.put("11dAtktxQQzipxuLqljEfY", List.of("sf", "cc"));
+        trackDanceStore.put("tsv001", List.of("cc"));
+        Path path = Files.createTempFile("trackIndex", ".bin");
+        try {
+            TrackIndexSnapshot.write(path, List.of(
+                    new TrackIndex.Source("file:tracks.tsv", TrackIndex.Kind.MORE_TRACKS, "1/2", trackDanceStore),
+                    new TrackIndex.Source("web", TrackIndex.Kind.MORE_TRACKS, trackDanceStore))); // no fingerprint, not persisted
+            List<TrackIndex.Source> sources = TrackIndexSnapshot.read(path);
+            Assertions.assertEquals(1, sources.size());
+            Assertions.assertEquals("file:tracks.tsv", sources.get(0).key());
+            Assertions.assertEquals("1/2", sources.get(0).fingerprint());
+            TrackDanceStore read = sources.get(0).tracks();
+            Assertions.assertEquals(3, read.size());
+            Assertions.assertEquals("[sf, cc]", read.get("11dAtktxQQzipxuLqljEfY").toString());
+            Assertions.assertEquals("[cc]", read.get("tsv001").toString());
+        }
+        finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.tbee.spotifyDanceInfo;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates the track ids and dances for the stress tests and the benchmarks, so both run on the same kind of data.
+ * Everything is derived from a seed, so every run gets the same data.
+ */
+public class TrackFixtures {
+
+    private static final String BASE62 = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    public static final String[] DANCES = {"sw", "ta", "qs", "sf", "vw", "ru", "cc", "sa", "ji", "pd", "sal", "bac", "wcs", "cc,sal", "ru, bol"};
+    public static final String[] DANCE_IDS = {"sw", "ta", "qs", "sf", "vw", "ru", "cc", "sa", "ji", "pd", "sal", "bac", "wcs", "bol"};
+    public static final int XLS_MAX_ROWS = 65_535; // a xls holds 65536 rows, the header takes one
+
+    /**
+     * An id that can be derived from the track number, so the expected result does not need to be kept in memory.
+     */
+    public static String trackId(int track) {
+        return trackId(new SplittableRandom(track));
+    }
+
+    /**
+     * @return ids from the same seed start with the same ids
+     */
+    public static String[] trackIds(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] trackIds = new String[count];
+        for (int i = 0; i < count; i++) {
+            trackIds[i] = trackId(random);
+        }
+        return trackIds;
+    }
+
+    public static String danceText(int idx) {
+        return DANCES[idx % DANCES.length];
+    }
+
+    /**
+     * A Spotify-like id, below 2^128 like the real ones, so it is stored in two longs.
+     */
+    private static String trackId(SplittableRandom random) {
+        StringBuilder id = new StringBuilder(TrackDanceStore.ID_LENGTH);
+        id.append(BASE62.charAt(random.nextInt(8)));
+        for (int i = 1; i < TrackDanceStore.ID_LENGTH; i++) {
+            id.append(BASE62.charAt(random.nextInt(BASE62.length())));
+        }
+        return id.toString();
+    }
+}
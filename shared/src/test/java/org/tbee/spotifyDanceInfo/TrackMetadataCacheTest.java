@@ -0,0 +1,45 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class TrackMetadataCacheTest {
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        TrackMetadataCache trackMetadataCache = new TrackMetadataCache(2, Duration.ofHours(1), null);
+        trackMetadataCache.put(new TrackMetadata("id1", "name1", "artist1", null));
+        trackMetadataCache.put(new TrackMetadata("id2", "name2", "artist2", null));
+        trackMetadataCache.get("id1");
+        trackMetadataCache.put(new TrackMetadata("id3", "name3", "artist3", null));
+        Assertions.assertEquals("artist1", trackMetadataCache.get("id1").artist());
+        Assertions.assertNull(trackMetadataCache.get("id2"));
+        Assertions.assertEquals(2, trackMetadataCache.hits());
+        Assertions.assertEquals(1, trackMetadataCache.misses());
+    }
+
+    @Test
+    public void expire() {
+        TrackMetadataCache trackMetadataCache = new TrackMetadataCache(2, Duration.ofMillis(-1), null);
+        trackMetadataCache.put(new TrackMetadata("id1", "name1", "artist1", null));
+        Assertions.assertNull(trackMetadataCache.get("id1"));
+        Assertions.assertEquals(0, trackMetadataCache.size());
+    }
+
+    @Test
+    public void persist(@TempDir Path directory) {
+        Path path = directory.resolve("trackMetadata.bin");
+        TrackMetadataCache trackMetadataCache = new TrackMetadataCache(10, Duration.ofHours(1), path);
+        trackMetadataCache.put(new TrackMetadata("id1", "name1", "artist1", "https://i.scdn.co/image/1"));
+        trackMetadataCache.put(new TrackMetadata("id2", "name2", "", null));
+        trackMetadataCache.save();
+
+        TrackMetadataCache readTrackMetadataCache = new TrackMetadataCache(10, Duration.ofHours(1), path);
+        Assertions.assertEquals(new TrackMetadata("id1", "name1", "artist1", "https://i.scdn.co/image/1"), readTrackMetadataCache.get("id1"));
+        Assertions.assertEquals(new TrackMetadata("id2", "name2", "", null), readTrackMetadataCache.get("id2"));
+    }
+}
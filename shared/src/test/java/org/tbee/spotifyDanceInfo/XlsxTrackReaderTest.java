@@ -0,0 +1,92 @@
+package org.tbee.spotifyDanceInfo;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XlsxTrackReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void file() throws IOException {
+        List<String> rows = new ArrayList<>();
+        int cnt = XlsxTrackReader.read(fixture(), 1, 0, 2, (id, danceText) -> rows.add(id + "=" + danceText));
+        Assertions.assertEquals(List.of("xlsx001=ew", "xlsx002=ew, ru", "xlsx003=", "xlsx005=sa"), rows);
+        Assertions.assertEquals(4, cnt);
+    }
+
+    @Test
+    public void inputStream() throws IOException {
+        List<String> rows = new ArrayList<>();
+        try (
+            InputStream inputStream = new FileInputStream(fixture());
+        ) {
+            XlsxTrackReader.read(inputStream, 1, 0, 2, (id, danceText) -> rows.add(id + "=" + danceText));
+        }
+        Assertions.assertEquals(List.of("xlsx001=ew", "xlsx002=ew, ru", "xlsx003=", "xlsx005=sa"), rows);
+    }
+
+    @Test
+    public void missingSheet() {
+        Assertions.assertThrows(IOException.class, () -> XlsxTrackReader.read(fixture(), 5, 0, 2, (id, danceText) -> {}));
+    }
+
+    @Test
+    public void multipleDances() throws IOException {
+        Cfg<?> cfg = new CfgForTest("excel.tecl", false, false);
+        try (
+            InputStream inputStream = new FileInputStream(fixture());
+        ) {
+            cfg.readMoreTracksXSLX("fixture", inputStream, 1, 0, 2);
+        }
+        Assertions.assertEquals("[ew, ru]", cfg.trackIdToDanceIds("xlsx002").toString());
+        Assertions.assertEquals("[sa]", cfg.trackIdToDanceIds("xlsx005").toString());
+    }
+
+    /**
+     * The tracks are on the second sheet, with the dance in the third column, so the column must be taken from the cell reference.
+     * The notes column is often empty, the handler does not report empty cells.
+     */
+    private File fixture() throws IOException {
+        File file = tempDir.resolve("tracks.xlsx").toFile();
+        try (
+            XSSFWorkbook workbook = new XSSFWorkbook();
+            OutputStream outputStream = new FileOutputStream(file);
+        ) {
+            workbook.createSheet("other").createRow(0).createCell(0).setCellValue("not the tracks");
+            Sheet sheet = workbook.createSheet("tracks");
+            row(sheet, 0, "trackId", "notes", "danceId");
+            row(sheet, 1, "xlsx001", null, "ew");
+            row(sheet, 2, "xlsx002", "two dances", "ew, ru");
+            row(sheet, 3, "xlsx003", "no dance", null);
+            row(sheet, 4, null, "no id", "cc");
+            row(sheet, 5, "xlsx005", null, "sa");
+            workbook.write(outputStream);
+        }
+        return file;
+    }
+
+    private static void row(Sheet sheet, int rowIdx, String... values) {
+        Row row = sheet.createRow(rowIdx);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                row.createCell(i).setCellValue(values[i]);
+            }
+        }
+    }
+}
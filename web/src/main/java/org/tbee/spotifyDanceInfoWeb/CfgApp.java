@@ -8,6 +8,7 @@ public class CfgApp extends Cfg<CfgApp> {
 
     public CfgApp() {
         super();
+        useSnapshot().readMoreTracks();
     }
 
     @Override
@@ -10,7 +10,7 @@ public class CfgSession extends Cfg<CfgSession> {
     }
 
     public CfgSession(HttpSession session) {
-        super();
+        super(SpotifyDanceInfoWebApplication.cfg()); // the configuration and moreTracks are shared with the application
         session.setAttribute(CfgSession.class.getName(), this);
     }
 
@@ -6,7 +6,6 @@ import jakarta.servlet.http.HttpSession;
 import org.apache.commons.io.IOUtils;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -61,10 +60,10 @@ public class ConnectController extends ControllerBase {
     public String connectSubmit(HttpSession session, Model model, @ModelAttribute ConnectForm connectForm, @RequestParam("file") MultipartFile file) {
         try {
             // Load submitted configuration
-            // Each time CfgSession is created, it will load the config.tecl.
-            // So every CfgSession contains the application level information, and is then augmented with the uploaded data.
-            // This also facilitates that if one of the external sources is altered, a login suffices to get the latest.
-            CfgSession cfg = new CfgSession(session).readMoreTracks();
+            // The CfgSession is an overlay on the application's Cfg, which holds the configuration and the moreTracks.
+            // The CfgSession is augmented with the uploaded data (and later the playlists).
+            // The application's moreTracks are read at startup and kept current by the application, a change is forwarded to the sessions.
+            CfgSession cfg = new CfgSession(session);
             String originalFilename = file.getOriginalFilename();
             if (originalFilename == null) {
                 // do nothing
@@ -73,7 +72,7 @@ public class ConnectController extends ControllerBase {
                 cfg.readMoreTracksTSV("web", file.getInputStream(), 0, 1);
             }
             else if (originalFilename.endsWith(".xlsx")) {
-                cfg.readMoreTracksExcel("web", new XSSFWorkbook(file.getInputStream()), 0, 0, 1);
+                cfg.readMoreTracksXSLX("web", file.getInputStream(), 0, 0, 1);
             }
             else if (originalFilename.endsWith(".xls")) {
                 cfg.readMoreTracksExcel("web", new HSSFWorkbook(file.getInputStream()), 0, 0, 1);
@@ -116,7 +115,7 @@ public class ConnectController extends ControllerBase {
 
             // Now that the spotify API is active, read config data that requires spotify access
             CfgSession.get(session) // This was already created in connectSubmit
-                    .onChange(cfg -> screenData.refresh(cfg.getNumberOfActiveBackgroundTasks()))
+                    .onChange((cfg, changes) -> screenData.refresh(cfg.getNumberOfActiveBackgroundTasks(), changes.contains(CfgSession.Change.INDEX)))
                     .readPlaylists(spotifyConnectData::newApi);
 
             // redirect to our spotify page, start showing the track information
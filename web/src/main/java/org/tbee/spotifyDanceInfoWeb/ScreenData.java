@@ -21,12 +21,17 @@ public class ScreenData {
         session.setAttribute(ScreenData.class.getName(), this);
     }
 
-    public void refresh(int numberOfActiveBackgroundTasks) {
+    /**
+     * @param indexChanged when the dances may have changed, the currently playing song is reset so its dances are looked up again
+     */
+    public void refresh(int numberOfActiveBackgroundTasks, boolean indexChanged) {
         this.numberOfActiveBackgroundTasks = numberOfActiveBackgroundTasks;
         if (numberOfActiveBackgroundTasks > maxNumberOfActiveBackgroundTasks) {
             maxNumberOfActiveBackgroundTasks = numberOfActiveBackgroundTasks;
         }
-        currentlyPlaying = new Song();
+        if (indexChanged) {
+            currentlyPlaying = new Song();
+        }
     }
 
     public Song currentlyPlaying() {
@@ -4,6 +4,8 @@ import jakarta.servlet.http.HttpSession;
 import org.apache.hc.core5.http.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tbee.spotifyDanceInfo.TrackMetadataCache;
+import org.tbee.spotifyDanceInfo.TrackMetadataLoader;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
@@ -23,6 +25,8 @@ public class SpotifyConnectData {
     private String accessToken;
     private LocalDateTime accessTokenExpireDateTime;
     private LocalDateTime connectTime = null;
+    private volatile SpotifyApi spotifyApi = null; // the latest api, used by the trackMetadataLoader outside the requests
+    private TrackMetadataLoader trackMetadataLoader = null;
 
     static public SpotifyConnectData get(HttpSession session) {
         return (SpotifyConnectData) session.getAttribute(SpotifyConnectData.class.getName());
@@ -108,6 +112,7 @@ public class SpotifyConnectData {
                 refreshAccessToken();
             }
 
+            this.spotifyApi = spotifyApi;
             return spotifyApi;
         }
         catch (URISyntaxException e) {
@@ -115,6 +120,16 @@ public class SpotifyConnectData {
         }
     }
 
+    /**
+     * The loader lives as long as the session, so concurrent and consecutive requests for a track are combined.
+     */
+    public synchronized TrackMetadataLoader trackMetadataLoader(TrackMetadataCache trackMetadataCache) {
+        if (trackMetadataLoader == null) {
+            trackMetadataLoader = new TrackMetadataLoader(() -> spotifyApi, trackMetadataCache);
+        }
+        return trackMetadataLoader;
+    }
+
     public void refreshAccessToken() {
         try {
             if (logger.isInfoEnabled()) logger.info("Refreshing access token");
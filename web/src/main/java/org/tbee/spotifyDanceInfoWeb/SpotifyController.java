@@ -7,8 +7,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.tbee.spotifyDanceInfo.SpotifyCallScheduler;
+import org.tbee.spotifyDanceInfo.TrackMetadataLoader;
+import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.model_objects.IPlaylistItem;
-import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -41,7 +43,10 @@ public class SpotifyController extends ControllerBase {
     }
 
     private void updateCurrentlyPlaying(HttpSession session) {
-        SpotifyConnectData.get(session).newApi().getUsersCurrentlyPlayingTrack().build().executeAsync()
+        SpotifyConnectData spotifyConnectData = SpotifyConnectData.get(session);
+        SpotifyApi spotifyApi = spotifyConnectData.newApi();
+        TrackMetadataLoader trackMetadataLoader = spotifyConnectData.trackMetadataLoader(CfgSession.get(session).trackMetadataCache()); // the cache is shared by all sessions
+        SpotifyCallScheduler.instance().callAsync(spotifyApi.getClientId(), SpotifyCallScheduler.Priority.LIVE, () -> spotifyApi.getUsersCurrentlyPlayingTrack().build().execute())
                 .exceptionally(ControllerBase::logException)
                 .thenAccept(track -> {
                     synchronized (session) {
@@ -64,8 +69,9 @@ public class SpotifyController extends ControllerBase {
                         }
                         else {
                             //pollCovertArt(id);
-                            pollArtist(session, currentlyPlaying);
-                            pollNextUp(session, currentlyPlaying.trackId());
+                            CfgSession.get(session).prioritizeSourcesOf(currentlyPlaying.trackId());
+                            pollArtist(trackMetadataLoader, track.getItem(), currentlyPlaying);
+                            pollNextUp(session, spotifyApi, trackMetadataLoader, currentlyPlaying.trackId());
                             setDances(session, currentlyPlaying);
                         }
                     }
@@ -74,7 +80,7 @@ public class SpotifyController extends ControllerBase {
 
     private void setDances(HttpSession session, Song song) {
 
-        // The CfgSession also loaded the config.tecl file, so there is no need to look into AppCfg.
+        // The CfgSession is an overlay on the application Cfg, so there is no need to look into AppCfg.
         CfgSession sessionCfg = CfgSession.get(session);
         List<String> sessionDances = sessionCfg.trackIdToDanceIds(song.trackId()).stream()
                 .filter(danceId -> !danceId.isBlank())
@@ -83,20 +89,21 @@ public class SpotifyController extends ControllerBase {
         song.dances(sessionDances);
     }
 
-    private void pollArtist(HttpSession session, Song song) {
-        SpotifyConnectData.get(session).newApi().getTrack(song.trackId()).build().executeAsync()
+    /**
+     * The artist usually is in the response already, otherwise it is fetched.
+     */
+    private void pollArtist(TrackMetadataLoader trackMetadataLoader, IPlaylistItem playlistItem, Song song) {
+        trackMetadataLoader.get(playlistItem)
                 .exceptionally(ControllerBase::logException)
-                .thenAccept(t -> {
-                    ArtistSimplified[] artists = t.getArtists();
-                    if (artists.length > 0) {
-                        String name = artists[0].getName();
-                        song.artist(name);
+                .thenAccept(trackMetadata -> {
+                    if (trackMetadata != null && !trackMetadata.artist().isBlank()) {
+                        song.artist(trackMetadata.artist());
                     }
                 });
     }
 
-    public void pollNextUp(HttpSession session, String trackId) {
-        SpotifyConnectData.get(session).newApi().getTheUsersQueue().build().executeAsync()
+    public void pollNextUp(HttpSession session, SpotifyApi spotifyApi, TrackMetadataLoader trackMetadataLoader, String trackId) {
+        SpotifyCallScheduler.instance().callAsync(spotifyApi.getClientId(), SpotifyCallScheduler.Priority.LIVE, () -> spotifyApi.getTheUsersQueue().build().execute())
                 .exceptionally(ControllerBase::logException)
                 .thenAccept(playbackQueue -> {
                     ScreenData screenData = ScreenData.get(session);
@@ -109,14 +116,12 @@ public class SpotifyController extends ControllerBase {
                             Song song = new Song(playlistItem.getId(), playlistItem.getName(), "");
                             songs.add(song);
                             setDances(session, song);
+                            pollArtist(trackMetadataLoader, playlistItem, song);
                             if (songs.size() == 3) {
                                 break;
                             }
                         }
                         screenData.nextUp(songs);
-
-                        // Update artist
-                        songs.forEach(song -> pollArtist(session, song));
                     }
                 });
     }